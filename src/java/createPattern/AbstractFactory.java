@@ -8,16 +8,25 @@ package src.java.createPattern;
     抽象工厂模式：一个工厂方法可以创建一类具体产品
 */
 
+import java.util.Objects;
 
 // 1. 定义抽象产品
 // 抽象产品A
 interface ProductA {
     void display();
+
+    // 归还到对象池时调用，清理产品的状态
+    default void reset() {
+    }
 }
 
 // 抽象产品B
 interface ProductB {
     void show();
+
+    // 归还到对象池时调用，清理产品的状态
+    default void reset() {
+    }
 }
 
 // 2. 实现具体产品类 
@@ -57,6 +66,17 @@ class ConcreteProductB2 implements ProductB {
 public interface AbstractFactory {
     ProductA createProductA();
     ProductB createProductB();
+
+    // 批量创建 count 组配套的产品，写入调用方提供的数组 [offset, offset + count)
+    // 默认实现逐个调用工厂方法，具体工厂可以覆盖为直接 new，省去每个对象一次的接口调用
+    default void createFamilies(ProductA[] productsA, ProductB[] productsB, int offset, int count) {
+        Objects.checkFromIndexSize(offset, count, productsA.length);
+        Objects.checkFromIndexSize(offset, count, productsB.length);
+        for (int i = offset; i < offset + count; i++) {
+            productsA[i] = createProductA();
+            productsB[i] = createProductB();
+        }
+    }
 }
 
 // 4. 实现具体工厂类
@@ -71,6 +91,16 @@ class ConcreteFactory1 implements AbstractFactory {
     public ProductB createProductB() {
         return new ConcreteProductB1();
     }
+
+    @Override
+    public void createFamilies(ProductA[] productsA, ProductB[] productsB, int offset, int count) {
+        Objects.checkFromIndexSize(offset, count, productsA.length);
+        Objects.checkFromIndexSize(offset, count, productsB.length);
+        for (int i = offset; i < offset + count; i++) {
+            productsA[i] = new ConcreteProductA1();
+            productsB[i] = new ConcreteProductB1();
+        }
+    }
 }
 
 // 具体工厂2,生产产品A2和B2
@@ -84,6 +114,16 @@ class ConcreteFactory2 implements AbstractFactory {
     public ProductB createProductB() {
         return new ConcreteProductB2();
     }
+
+    @Override
+    public void createFamilies(ProductA[] productsA, ProductB[] productsB, int offset, int count) {
+        Objects.checkFromIndexSize(offset, count, productsA.length);
+        Objects.checkFromIndexSize(offset, count, productsB.length);
+        for (int i = offset; i < offset + count; i++) {
+            productsA[i] = new ConcreteProductA2();
+            productsB[i] = new ConcreteProductB2();
+        }
+    }
 }
 
 // 客户端代码
@@ -104,4 +144,3 @@ class AbstractFactoryExample {
         productB2.show();
     }
 }
-
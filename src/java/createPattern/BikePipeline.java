@@ -0,0 +1,184 @@
+package src.java.createPattern;
+
+/*
+并行订单流水线：Builder.main 中读取、选择建造者、构建、输出是严格串行的，构建步骤代价较高时只有一个核在工作。
+
+BikePipeline 把每个订单的构建提交到 ForkJoinPool 中并行执行，但结果仍然按输入顺序交给调用方：
+重排缓冲区：按提交顺序排列的 Future 队列，调用方从队头开始按顺序等待并输出。
+背压：同时在途的订单最多 maxInFlight 个，缓冲区满时调用方先输出最早的订单，再提交新的订单，内存占用不会随订单数量增长。
+建造者不是线程安全的，每个工作线程通过 ThreadLocal 持有自己的 BikeDirector（以及其中复用的建造者）。
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class BikePipeline implements AutoCloseable {
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final ThreadLocal<BikeDirector> directors;
+
+    public BikePipeline(Supplier<BikeDirector> directorFactory) {
+        this(directorFactory, Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    public BikePipeline(Supplier<BikeDirector> directorFactory, int parallelism, int maxInFlight) {
+        if (parallelism < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("parallelism and maxInFlight must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxInFlight = maxInFlight;
+        this.directors = ThreadLocal.withInitial(directorFactory);
+    }
+
+    // 并行构建，按输入顺序把结果交给 sink（sink 在调用线程中执行）
+    public void run(Iterable<String> orderTypes, Consumer<? super Bike> sink) {
+        // 按提交顺序排列的未输出订单，最多 maxInFlight 个
+        Deque<CompletableFuture<Bike>> window = new ArrayDeque<>(maxInFlight);
+        try {
+            for (String bikeType : orderTypes) {
+                if (window.size() == maxInFlight) {
+                    emit(window, sink);
+                }
+                window.addLast(CompletableFuture.supplyAsync(() -> directors.get().construct(bikeType), pool));
+            }
+            while (!window.isEmpty()) {
+                emit(window, sink);
+            }
+        } catch (RuntimeException | Error e) {
+            // 出错时取消尚未完成的订单
+            for (CompletableFuture<Bike> f : window) {
+                f.cancel(false);
+            }
+            throw e;
+        }
+    }
+
+    public List<Bike> constructAll(List<String> orderTypes) {
+        List<Bike> bikes = new ArrayList<>(orderTypes.size());
+        run(orderTypes, bikes::add);
+        return bikes;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private void emit(Deque<CompletableFuture<Bike>> window, Consumer<? super Bike> sink) {
+        Bike bike;
+        try {
+            bike = window.peekFirst().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+        window.removeFirst();
+        sink.accept(bike);
+    }
+}
+
+// 模拟代价较高的构建步骤：在每一步中忙等指定的微秒数
+class SlowBikeBuilder implements BikeBuilder {
+    private final BikeBuilder delegate;
+    private final long stepNanos;
+
+    SlowBikeBuilder(BikeBuilder delegate, long stepMicros) {
+        this.delegate = delegate;
+        this.stepNanos = stepMicros * 1000;
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+    }
+
+    @Override
+    public void buildFrame() {
+        spin();
+        delegate.buildFrame();
+    }
+
+    @Override
+    public void buildTires() {
+        spin();
+        delegate.buildTires();
+    }
+
+    @Override
+    public Bike getResult() {
+        return delegate.getResult();
+    }
+
+    private void spin() {
+        long end = System.nanoTime() + stepNanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+}
+
+/*
+串行 constructAll 与并行流水线的对比，分别改变订单数量和每个构建步骤的耗时，并校验输出顺序一致。
+用法：java src.java.createPattern.BikePipelineBenchmark [订单数量列表] [步骤耗时微秒列表] [maxInFlight]
+ */
+class BikePipelineBenchmark {
+    public static void main(String[] args) {
+        int[] orderCounts = parse(args.length > 0 ? args[0] : "1000,10000,100000");
+        int[] stepMicros = parse(args.length > 1 ? args[1] : "0,5,50");
+        int maxInFlight = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        System.out.printf("parallelism=%d maxInFlight=%d%n", parallelism, maxInFlight);
+        System.out.printf("%10s %10s %14s %14s %8s%n", "orders", "step(us)", "serial(ms)", "pipeline(ms)", "speedup");
+
+        for (int micros : stepMicros) {
+            Supplier<BikeDirector> factory = () -> new BikeDirector(
+                    new SlowBikeBuilder(new MountainBikeBuilder(), micros),
+                    new SlowBikeBuilder(new RoadBikeBuilder(), micros));
+            for (int n : orderCounts) {
+                // 步骤耗时较大时限制订单数量，避免单轮运行时间过长
+                if ((long) n * micros > 2_000_000L) {
+                    continue;
+                }
+                List<String> orders = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    orders.add(i % 3 == 0 ? "road" : "mountain");
+                }
+
+                long start = System.nanoTime();
+                List<Bike> serial = factory.get().constructAll(orders);
+                long serialNanos = System.nanoTime() - start;
+
+                List<Bike> parallel;
+                try (BikePipeline pipeline = new BikePipeline(factory, parallelism, maxInFlight)) {
+                    start = System.nanoTime();
+                    parallel = pipeline.constructAll(orders);
+                }
+                long pipelineNanos = System.nanoTime() - start;
+
+                if (!serial.equals(parallel)) {
+                    throw new IllegalStateException("pipeline output is out of order");
+                }
+                System.out.printf("%10d %10d %14.2f %14.2f %7.2fx%n", n, micros,
+                        serialNanos / 1e6, pipelineNanos / 1e6, serialNanos / (double) pipelineNanos);
+            }
+        }
+    }
+
+    private static int[] parse(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    }
+}
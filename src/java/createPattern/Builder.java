@@ -18,29 +18,73 @@ package src.java.createPattern;
  */
 
 
-import java.util.Scanner;
+import src.java.util.FastReader;
 
-// 自行车产品
-class Bike {
-    private String frame;
-    private String tires;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// 自行车产品：不可变，相同配置的自行车只保留一个实例
+final class Bike {
+    private static final Map<String, Map<String, Bike>> INTERNED = new ConcurrentHashMap<>();
+
+    private final String frame;
+    private final String tires;
+    private final String text;
 
-    public void setFrame(String frame) {
+    private Bike(String frame, String tires) {
         this.frame = frame;
+        this.tires = tires;
+        this.text = frame + " " + tires;
     }
 
-    public void setTires(String tires) {
-        this.tires = tires;
+    // 按 (frame, tires) 返回共享实例，已存在时不分配任何对象
+    public static Bike of(String frame, String tires) {
+        Objects.requireNonNull(frame, "frame");
+        Objects.requireNonNull(tires, "tires");
+        Map<String, Bike> byTires = INTERNED.get(frame);
+        if (byTires == null) {
+            byTires = new ConcurrentHashMap<>();
+            Map<String, Bike> existing = INTERNED.putIfAbsent(frame, byTires);
+            if (existing != null) {
+                byTires = existing;
+            }
+        }
+        Bike bike = byTires.get(tires);
+        if (bike == null) {
+            bike = new Bike(frame, tires);
+            Bike existing = byTires.putIfAbsent(tires, bike);
+            if (existing != null) {
+                bike = existing;
+            }
+        }
+        return bike;
+    }
+
+    public String getFrame() {
+        return frame;
+    }
+
+    public String getTires() {
+        return tires;
     }
 
     @Override
     public String toString() {
-        return frame + " " + tires;
+        return text;
     }
 }
 
 // 自行车建造者接口
 interface BikeBuilder {
+    // 清空上一次的构建状态，使同一个建造者可以重复使用
+    void reset();
     void buildFrame();
     void buildTires();
     Bike getResult();
@@ -48,84 +92,190 @@ interface BikeBuilder {
 
 // 山地自行车建造者
 class MountainBikeBuilder implements BikeBuilder {
-    private Bike bike;
+    private String frame;
+    private String tires;
 
-    public MountainBikeBuilder() {
-        this.bike = new Bike();
+    @Override
+    public void reset() {
+        frame = null;
+        tires = null;
     }
 
     @Override
     public void buildFrame() {
-        bike.setFrame("Aluminum Frame");
+        frame = "Aluminum Frame";
     }
 
     @Override
     public void buildTires() {
-        bike.setTires("Knobby Tires");
+        tires = "Knobby Tires";
     }
 
     @Override
     public Bike getResult() {
-        return bike;
+        if (frame == null || tires == null) {
+            throw new IllegalStateException("Bike is incomplete: buildFrame and buildTires must run before getResult");
+        }
+        return Bike.of(frame, tires);
     }
 }
 
 // 公路自行车建造者
 class RoadBikeBuilder implements BikeBuilder {
-    private Bike bike;
+    private String frame;
+    private String tires;
 
-    public RoadBikeBuilder() {
-        this.bike = new Bike();
+    @Override
+    public void reset() {
+        frame = null;
+        tires = null;
     }
 
     @Override
     public void buildFrame() {
-        bike.setFrame("Carbon Frame");
+        frame = "Carbon Frame";
     }
 
     @Override
     public void buildTires() {
-        bike.setTires("Slim Tires");
+        tires = "Slim Tires";
     }
 
     @Override
     public Bike getResult() {
-        return bike;
+        if (frame == null || tires == null) {
+            throw new IllegalStateException("Bike is incomplete: buildFrame and buildTires must run before getResult");
+        }
+        return Bike.of(frame, tires);
     }
 }
 
 // 自行车Director，负责构建自行车
 class BikeDirector {
+    // 分块输出时每块的字符数
+    private static final int OUTPUT_CHUNK = 1 << 16;
+
+    // 批量构建时复用的建造者
+    private final BikeBuilder mountainBuilder;
+    private final BikeBuilder roadBuilder;
+
+    public BikeDirector() {
+        this(new MountainBikeBuilder(), new RoadBikeBuilder());
+    }
+
+    public BikeDirector(BikeBuilder mountainBuilder, BikeBuilder roadBuilder) {
+        this.mountainBuilder = mountainBuilder;
+        this.roadBuilder = roadBuilder;
+    }
+
     public Bike construct(BikeBuilder builder) {
+        builder.reset();
         builder.buildFrame();
         builder.buildTires();
         return builder.getResult();
     }
+
+    // 按订单类型构建一辆自行车，使用该类型复用的建造者
+    public Bike construct(String bikeType) {
+        return construct(builderFor(bikeType));
+    }
+
+    // 按订单类型批量构建，每种类型只使用一个建造者
+    public List<Bike> constructAll(List<String> orderTypes) {
+        List<Bike> bikes = new ArrayList<>(orderTypes.size());
+        for (String bikeType : orderTypes) {
+            bikes.add(construct(bikeType));
+        }
+        return bikes;
+    }
+
+    // 把一批自行车分块写入 out：缓冲区大小固定，订单再多也不会创建超大的 StringBuilder
+    public static void print(List<Bike> bikes, PrintStream out) {
+        Printer printer = new Printer(out);
+        for (Bike bike : bikes) {
+            printer.accept(bike);
+        }
+        printer.flush();
+    }
+
+    // 逐辆追加到固定大小的缓冲区，写满一块输出一次，用完后调用 flush；
+    // 可以直接作为 BikePipeline.run 的 sink，构建出来的自行车不需要先收集到列表中。
+    // 行尾和原来的 System.out.println 一样使用平台的换行符
+    static final class Printer implements Consumer<Bike> {
+        private static final String LINE_SEPARATOR = System.lineSeparator();
+
+        private final PrintStream out;
+        private final StringBuilder sb = new StringBuilder(OUTPUT_CHUNK);
+
+        Printer(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(Bike bike) {
+            sb.append(bike.toString()).append(LINE_SEPARATOR);
+            if (sb.length() >= OUTPUT_CHUNK - 64) {
+                out.append(sb);
+                sb.setLength(0);
+            }
+        }
+
+        public void flush() {
+            out.append(sb);
+            sb.setLength(0);
+            out.flush();
+        }
+    }
+
+    private BikeBuilder builderFor(String bikeType) {
+        // 根据输入类别，选择不同类型的具体建造者
+        return bikeType.equals("mountain") ? mountainBuilder : roadBuilder;
+    }
 }
 
+
 public class Builder {
     // 客户端代码
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
+        FastReader reader = new FastReader(System.in);
 
-        int N = scanner.nextInt();  // 订单数量
-        scanner.nextLine();
+        int N = reader.nextInt();  // 订单数量
+        reader.nextLine();
 
-        BikeDirector director = new BikeDirector();
+        // Director负责指导生产产品，结果边构建边分块输出，不在内存中保留整批订单
+        BikeDirector.Printer printer = new BikeDirector.Printer(System.out);
+        if (args.length > 0 && args[0].equals("--parallel")) {
+            // 并行构建，输出顺序仍与输入一致；同时在途的订单数有上限，读取跟着输出的进度走
+            try (BikePipeline pipeline = new BikePipeline(BikeDirector::new)) {
+                pipeline.run(orders(reader, N), printer);
+            }
+        } else {
+            BikeDirector director = new BikeDirector();
+            for (int i = 0; i < N; i++) {
+                printer.accept(director.construct(reader.nextLine()));
+            }
+        }
+        printer.flush();
+    }
 
-        for (int i = 0; i < N; i++) {
-            String bikeType = scanner.nextLine();
+    // 按需从输入中读取 N 个订单，只能遍历一次
+    private static Iterable<String> orders(FastReader reader, int n) {
+        return () -> new Iterator<String>() {
+            private int read;
 
-            BikeBuilder builder;
-            // 根据输入类别，创建不同类型的具体建造者
-            if (bikeType.equals("mountain")) {
-                builder = new MountainBikeBuilder();
-            } else {
-                builder = new RoadBikeBuilder();
+            @Override
+            public boolean hasNext() {
+                return read < n;
             }
-            // Director负责指导生产产品
-            Bike bike = director.construct(builder);
-            System.out.println(bike);
-        }
+
+            @Override
+            public String next() {
+                if (read >= n) {
+                    throw new NoSuchElementException();
+                }
+                read++;
+                return reader.nextLine();
+            }
+        };
     }
 }
@@ -0,0 +1,120 @@
+package src.java.createPattern;
+
+/*
+每个订单的内存分配量对比：
+逐单构建：模拟原来的 Builder.main，每个订单 new 一个建造者，建造者再 new 一辆可变的自行车，逐行 println。
+批量构建：BikeDirector.constructAll 复用建造者，返回共享的不可变 Bike，结果分块写入缓冲区后输出。
+分配量用 com.sun.management.ThreadMXBean 统计当前线程分配的字节数。
+
+用法：java src.java.createPattern.BuilderBenchmark [订单数量]
+ */
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+class BuilderBenchmark {
+    // 原来的可变自行车，每个订单都会新建一辆
+    private static class LegacyBike {
+        private String frame;
+        private String tires;
+
+        @Override
+        public String toString() {
+            return frame + " " + tires;
+        }
+    }
+
+    // 原来的建造者：每个订单新建一个，构造时再新建一辆自行车
+    private interface LegacyBuilder {
+        void buildFrame();
+        void buildTires();
+        LegacyBike getResult();
+    }
+
+    private static class LegacyMountainBuilder implements LegacyBuilder {
+        private final LegacyBike bike = new LegacyBike();
+
+        @Override
+        public void buildFrame() {
+            bike.frame = "Aluminum Frame";
+        }
+
+        @Override
+        public void buildTires() {
+            bike.tires = "Knobby Tires";
+        }
+
+        @Override
+        public LegacyBike getResult() {
+            return bike;
+        }
+    }
+
+    private static class LegacyRoadBuilder implements LegacyBuilder {
+        private final LegacyBike bike = new LegacyBike();
+
+        @Override
+        public void buildFrame() {
+            bike.frame = "Carbon Frame";
+        }
+
+        @Override
+        public void buildTires() {
+            bike.tires = "Slim Tires";
+        }
+
+        @Override
+        public LegacyBike getResult() {
+            return bike;
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<String> orders = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            orders.add(i % 3 == 0 ? "road" : "mountain");
+        }
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        for (int round = 0; round < 3; round++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            perOrder(orders, sink);
+            long perOrderNanos = System.nanoTime() - start;
+            long perOrderBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            batched(orders, sink);
+            long batchedNanos = System.nanoTime() - start;
+            long batchedBytes = allocatedBytes() - before;
+
+            System.out.printf("round %d  per-order: %6.1f B/order %6.1f ns/order | batched: %6.1f B/order %6.1f ns/order%n",
+                    round, perOrderBytes / (double) n, perOrderNanos / (double) n,
+                    batchedBytes / (double) n, batchedNanos / (double) n);
+        }
+    }
+
+    private static void perOrder(List<String> orders, PrintStream out) {
+        for (String bikeType : orders) {
+            LegacyBuilder builder = bikeType.equals("mountain") ? new LegacyMountainBuilder() : new LegacyRoadBuilder();
+            builder.buildFrame();
+            builder.buildTires();
+            out.println(builder.getResult());
+        }
+    }
+
+    private static void batched(List<String> orders, PrintStream out) {
+        BikeDirector director = new BikeDirector();
+        List<Bike> bikes = director.constructAll(orders);
+        BikeDirector.print(bikes, out);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
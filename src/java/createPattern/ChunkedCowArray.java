@@ -0,0 +1,203 @@
+package src.java.createPattern;
+
+/*
+写时复制（Copy-On-Write）的分块数组，用于大原型的克隆。
+
+大原型（比如一张很大的网格模板）每次克隆都要复制全部状态，但大多数克隆体只会改动其中一两个位置。
+ChunkedCowArray 把数据切成固定大小的块，克隆时只共享块表，不复制任何数据，所以 share() 是 O(1) 的：
+第一次写入时复制块表（块数量级，不是元素数量级），再只复制被写入的那个块，其余的块继续和原型共享。
+共享之后原型自身也不再独占块表，原型的写入同样会先复制，不会影响到已经克隆出去的对象。
+
+注意：写操作不是线程安全的；多个线程可以同时从同一个原型克隆，但不能同时修改原型。
+ */
+
+import java.util.Arrays;
+
+public class ChunkedCowArray {
+    private static final int SHIFT = 10;
+    private static final int CHUNK = 1 << SHIFT;
+    private static final int MASK = CHUNK - 1;
+
+    private final int length;
+    private int[][] chunks;
+    // 当前对象独占的块，null 表示块表本身也是共享的
+    private boolean[] owned;
+
+    public ChunkedCowArray(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length: " + length);
+        }
+        this.length = length;
+        // 用 long 计算，length 接近 Integer.MAX_VALUE 时 length + MASK 不会溢出
+        int count = (int) (((long) length + MASK) >>> SHIFT);
+        chunks = new int[count][];
+        owned = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int size = Math.min(CHUNK, length - (i << SHIFT));
+            chunks[i] = new int[size];
+            owned[i] = true;
+        }
+    }
+
+    private ChunkedCowArray(int length, int[][] chunks) {
+        this.length = length;
+        this.chunks = chunks;
+    }
+
+    // O(1) 克隆：和当前对象共享同一张块表
+    public ChunkedCowArray share() {
+        owned = null;
+        return new ChunkedCowArray(length, chunks);
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return chunks[index >>> SHIFT][index & MASK];
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        writableChunk(index >>> SHIFT)[index & MASK] = value;
+    }
+
+    public void fill(int value) {
+        for (int c = 0; c < chunks.length; c++) {
+            Arrays.fill(writableChunk(c), value);
+        }
+    }
+
+    // 写入前确保块表和目标块都由当前对象独占
+    private int[] writableChunk(int c) {
+        if (owned == null) {
+            chunks = chunks.clone();
+            owned = new boolean[chunks.length];
+        }
+        if (!owned[c]) {
+            chunks[c] = chunks[c].clone();
+            owned[c] = true;
+        }
+        return chunks[c];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // 当前对象独占（已复制）的块数，用来观察实际复制了多少数据
+    public int ownedChunks() {
+        if (owned == null) {
+            return 0;
+        }
+        int n = 0;
+        for (boolean b : owned) {
+            if (b) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public int[] toArray() {
+        int[] result = new int[length];
+        for (int c = 0; c < chunks.length; c++) {
+            System.arraycopy(chunks[c], 0, result, c << SHIFT, chunks[c].length);
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
+
+// 大网格原型：cells 采用写时复制，克隆只共享块表
+class GridPrototype extends Prototype {
+    private String name;
+    private int width;
+    private int height;
+    private ChunkedCowArray cells;
+
+    public GridPrototype(String name, int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Negative grid size: " + width + " x " + height);
+        }
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        // 格子总数超过 int 范围时抛出 ArithmeticException，而不是溢出成一个错误的长度
+        this.cells = new ChunkedCowArray(Math.multiplyExact(width, height));
+    }
+
+    @Override
+    public Prototype clone() {
+        GridPrototype copy = (GridPrototype) clonePrototype();
+        copy.cells = cells.share();
+        return copy;
+    }
+
+    public int getCell(int x, int y) {
+        return cells.get(index(x, y));
+    }
+
+    public void setCell(int x, int y, int value) {
+        cells.set(index(x, y), value);
+    }
+
+    // x 越界时 y * width + x 会落到别的行上，所以两个坐标分别检查
+    private int index(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") outside " + width + " x " + height);
+        }
+        return y * width + x;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getDetails() {
+        return "Grid: " + name + ", Width: " + width + ", Height: " + height
+                + ", Copied chunks: " + cells.ownedChunks();
+    }
+}
+
+// 客户端代码：同一个模板克隆出几千个变体，每个变体只改一个格子
+class ChunkedCowArrayExample {
+    public static void main(String[] args) {
+        int variants = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        GridPrototype template = new GridPrototype("template", 512, 512);
+        for (int y = 0; y < 512; y++) {
+            template.setCell(y, y, 1);
+        }
+
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long before = rt.totalMemory() - rt.freeMemory();
+        long start = System.nanoTime();
+
+        GridPrototype[] clones = new GridPrototype[variants];
+        for (int i = 0; i < variants; i++) {
+            clones[i] = (GridPrototype) template.clone();
+            clones[i].setName("variant-" + i);
+            clones[i].setCell(i % 512, (i * 7) % 512, i);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        System.gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+
+        long eagerBytes = (long) variants * 512 * 512 * Integer.BYTES;
+        System.out.println(clones[variants - 1].getDetails());
+        System.out.printf("%d clones in %.2f ms, heap +%d KB (eager copies would need ~%d KB)%n",
+                variants, elapsed / 1e6, (after - before) / 1024, eagerBytes / 1024);
+        System.out.println("template untouched: " + (template.getCell(0, 0) == 1));
+    }
+}
@@ -0,0 +1,526 @@
+package src.java.createPattern;
+
+/*
+深拷贝：Prototype.clonePrototype 只是 super.clone() 的浅拷贝，子类中如果有引用类型的字段（数组、集合、其他对象），
+克隆体和原型会共享同一份可变状态。常见的做法是序列化再反序列化，但速度很慢。
+
+DeepCopier 为每个类只生成一次拷贝器（ClassValue 缓存），拷贝器由 MethodHandle 组成：
+Prototype 子类先用 clonePrototype 得到浅拷贝，再只替换需要深拷贝的引用字段；
+其他类通过无参构造方法创建，再逐个字段拷贝（基本类型字段用 getter 和 setter 组合成的一个 MethodHandle 直接搬运）。
+record 没有无参构造方法，字段也是 final：读取各个组件并深拷贝后，通过规范构造方法创建新的 record。
+String、包装类型、枚举、java.time 中的日期时间类型（都是不可变的值类型）、UUID 等不可变对象直接共享；
+基本类型数组用 clone 整体复制；常用集合按原容量新建后批量填充。
+List.of / Set.of / Map.of 这类不可变集合：元素拷贝后都和原来相同（元素本身不可变）时直接共享，否则用拷贝后的元素重新创建一个不可变集合。
+其他 JDK 集合：Arrays.asList 的结果拷贝成新的 Arrays.asList 列表，Collections.unmodifiableXxx 的结果拷贝内容后重新包装成只读视图；
+    ConcurrentHashMap、CopyOnWriteArrayList 这类有公开无参构造方法的集合新建同一个类；其余的按接口
+    （List、Set、SortedSet、Queue、Map、SortedMap）拷贝成对应的常用实现，有序集合保留比较器。
+字段遍历在第一个 JDK 类处停止：JDK 类的私有字段在 JDK 17 上无法通过反射访问，
+    用户继承 ArrayList、HashMap 等集合的子类先通过无参构造方法创建，拷贝子类自己的字段，再通过集合的 API 逐个加入拷贝后的元素。
+拷贝过程中用 IdentityHashMap 记录已经拷贝过的对象，循环引用和共享引用在拷贝后仍然保持相同的结构。
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public final class DeepCopier {
+    private static final Set<Class<?>> IMMUTABLE = new HashSet<>(List.of(
+            String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, Class.class,
+            UUID.class, URI.class, Locale.class));
+
+    private static final ClassValue<Boolean> IMMUTABLE_TYPES = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return type.isPrimitive() || IMMUTABLE.contains(type) || Enum.class.isAssignableFrom(type)
+                    || type.getName().startsWith("java.time.");
+        }
+    };
+
+    private static final ClassValue<RecordCopier> RECORD_COPIERS = new ClassValue<RecordCopier>() {
+        @Override
+        protected RecordCopier computeValue(Class<?> type) {
+            return new RecordCopier(type);
+        }
+    };
+
+    // 有公开无参构造方法的 JDK 集合类，没有时为空
+    private static final ClassValue<Optional<Constructor<?>>> JDK_CONSTRUCTORS = new ClassValue<Optional<Constructor<?>>>() {
+        @Override
+        protected Optional<Constructor<?>> computeValue(Class<?> type) {
+            if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(type.getConstructor());
+            } catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+        }
+    };
+
+    private static final ClassValue<ClassCopier> COPIERS = new ClassValue<ClassCopier>() {
+        @Override
+        protected ClassCopier computeValue(Class<?> type) {
+            return new ClassCopier(type);
+        }
+    };
+
+    private DeepCopier() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T copy(T source) {
+        return (T) copy(source, new IdentityHashMap<>());
+    }
+
+    static boolean isImmutable(Class<?> type) {
+        return IMMUTABLE_TYPES.get(type);
+    }
+
+    static Object copy(Object source, IdentityHashMap<Object, Object> seen) {
+        if (source == null) {
+            return null;
+        }
+        Class<?> type = source.getClass();
+        if (isImmutable(type)) {
+            return source;
+        }
+        Object done = seen.get(source);
+        if (done != null) {
+            return done;
+        }
+        if (type.isArray()) {
+            return copyArray(source, seen);
+        }
+        if (isImmutableCollection(type)) {
+            return copyImmutableCollection(source, seen);
+        }
+        if (source instanceof Collection) {
+            Collection<Object> target = newCollection(type, source);
+            if (target != null) {
+                seen.put(source, target);
+                for (Object e : (Collection<?>) source) {
+                    target.add(copy(e, seen));
+                }
+                return target;
+            }
+        } else if (source instanceof Map) {
+            Map<Object, Object> target = newMap(type, source);
+            if (target != null) {
+                seen.put(source, target);
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) source).entrySet()) {
+                    target.put(copy(e.getKey(), seen), copy(e.getValue(), seen));
+                }
+                return target;
+            }
+        }
+        if (isJdkClass(type)) {
+            if (source instanceof Collection || source instanceof Map) {
+                return copyJdkCollection(source, seen);
+            }
+            throw new IllegalArgumentException("Unsupported type for deep copy: " + type.getName());
+        }
+        if (type.isRecord()) {
+            return RECORD_COPIERS.get(type).copy(source, seen);
+        }
+        return COPIERS.get(type).copy(source, seen);
+    }
+
+    static boolean isJdkClass(Class<?> type) {
+        return type.getName().startsWith("java.");
+    }
+
+    // List.of、Set.of、Map.of、Stream.toList 等返回的不可变集合都是 ImmutableCollections 的内部类
+    private static boolean isImmutableCollection(Class<?> type) {
+        return type.getName().startsWith("java.util.ImmutableCollections$");
+    }
+
+    // 不可变集合创建之后不能再加入元素，只能先拷贝元素；拷贝元素时遇到指回这个集合的循环引用，会指向原来的集合
+    private static Object copyImmutableCollection(Object source, IdentityHashMap<Object, Object> seen) {
+        seen.put(source, source);
+        boolean changed = false;
+        Object target;
+        if (source instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) source;
+            Map<Object, Object> entries = new HashMap<>(Math.max(16, (int) (map.size() / .75f) + 1));
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                Object key = copy(e.getKey(), seen);
+                Object value = copy(e.getValue(), seen);
+                changed |= key != e.getKey() || value != e.getValue();
+                entries.put(key, value);
+            }
+            target = changed ? Map.copyOf(entries) : source;
+        } else {
+            Object[] elements = ((Collection<?>) source).toArray();
+            for (int i = 0; i < elements.length; i++) {
+                Object e = copy(elements[i], seen);
+                changed |= e != elements[i];
+                elements[i] = e;
+            }
+            if (!changed) {
+                target = source;
+            } else if (source instanceof Set) {
+                target = Set.of(elements);
+            } else {
+                // Stream.toList 得到的列表允许 null 元素，List.of 不允许
+                target = Stream.of(elements).toList();
+            }
+        }
+        seen.put(source, target);
+        return target;
+    }
+
+    // newCollection / newMap 不认识的 JDK 集合，先创建空的目标（只读视图包住的是可写的集合），登记后再填充，循环引用也能指向拷贝
+    @SuppressWarnings("unchecked")
+    private static Object copyJdkCollection(Object source, IdentityHashMap<Object, Object> seen) {
+        String name = source.getClass().getName();
+        if (name.equals("java.util.Arrays$ArrayList")) {
+            List<Object> list = (List<Object>) source;
+            List<Object> target = Arrays.asList(new Object[list.size()]);
+            seen.put(source, target);
+            for (int i = 0; i < target.size(); i++) {
+                target.set(i, copy(list.get(i), seen));
+            }
+            return target;
+        }
+        boolean unmodifiable = name.startsWith("java.util.Collections$Unmodifiable");
+        Optional<Constructor<?>> constructor = unmodifiable || isSorted(source)
+                ? Optional.empty() : JDK_CONSTRUCTORS.get(source.getClass());
+        if (source instanceof Map) {
+            Map<Object, Object> target;
+            if (constructor.isPresent()) {
+                target = (Map<Object, Object>) newInstance(constructor.get());
+            } else if (source instanceof SortedMap) {
+                target = new TreeMap<>(((SortedMap<Object, Object>) source).comparator());
+            } else {
+                target = new LinkedHashMap<>(Math.max(16, (int) (((Map<?, ?>) source).size() / .75f) + 1));
+            }
+            seen.put(source, unmodifiable ? unmodifiableView(source, target) : target);
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) source).entrySet()) {
+                target.put(copy(e.getKey(), seen), copy(e.getValue(), seen));
+            }
+            return seen.get(source);
+        }
+        Collection<?> collection = (Collection<?>) source;
+        Collection<Object> target;
+        if (constructor.isPresent()) {
+            target = (Collection<Object>) newInstance(constructor.get());
+        } else if (source instanceof SortedSet) {
+            target = new TreeSet<>(((SortedSet<Object>) source).comparator());
+        } else if (source instanceof Set) {
+            target = new LinkedHashSet<>(Math.max(16, (int) (collection.size() / .75f) + 1));
+        } else if (source instanceof Queue && !(source instanceof List)) {
+            target = new LinkedList<>();
+        } else {
+            target = new ArrayList<>(collection.size());
+        }
+        seen.put(source, unmodifiable ? unmodifiableView(source, target) : target);
+        for (Object e : collection) {
+            target.add(copy(e, seen));
+        }
+        return seen.get(source);
+    }
+
+    // 带比较器的有序集合不能用无参构造方法新建，否则会丢失比较器
+    private static boolean isSorted(Object source) {
+        return source instanceof SortedSet || source instanceof SortedMap || source instanceof PriorityQueue;
+    }
+
+    private static Object newInstance(Constructor<?> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    // 按原来的只读视图实现的接口重新包装
+    @SuppressWarnings("unchecked")
+    private static Object unmodifiableView(Object source, Object target) {
+        if (source instanceof NavigableMap) {
+            return Collections.unmodifiableNavigableMap((NavigableMap<Object, Object>) target);
+        } else if (source instanceof SortedMap) {
+            return Collections.unmodifiableSortedMap((SortedMap<Object, Object>) target);
+        } else if (source instanceof Map) {
+            return Collections.unmodifiableMap((Map<Object, Object>) target);
+        } else if (source instanceof NavigableSet) {
+            return Collections.unmodifiableNavigableSet((NavigableSet<Object>) target);
+        } else if (source instanceof SortedSet) {
+            return Collections.unmodifiableSortedSet((SortedSet<Object>) target);
+        } else if (source instanceof Set) {
+            return Collections.unmodifiableSet((Set<Object>) target);
+        } else if (source instanceof List) {
+            return Collections.unmodifiableList((List<Object>) target);
+        }
+        return Collections.unmodifiableCollection((Collection<Object>) target);
+    }
+
+    private static Object copyArray(Object source, IdentityHashMap<Object, Object> seen) {
+        if (source instanceof Object[]) {
+            Object[] target = ((Object[]) source).clone();
+            seen.put(source, target);
+            if (!isImmutable(source.getClass().getComponentType())) {
+                for (int i = 0; i < target.length; i++) {
+                    target[i] = copy(target[i], seen);
+                }
+            }
+            return target;
+        }
+        Object target;
+        if (source instanceof int[]) {
+            target = ((int[]) source).clone();
+        } else if (source instanceof long[]) {
+            target = ((long[]) source).clone();
+        } else if (source instanceof double[]) {
+            target = ((double[]) source).clone();
+        } else if (source instanceof byte[]) {
+            target = ((byte[]) source).clone();
+        } else if (source instanceof char[]) {
+            target = ((char[]) source).clone();
+        } else if (source instanceof float[]) {
+            target = ((float[]) source).clone();
+        } else if (source instanceof short[]) {
+            target = ((short[]) source).clone();
+        } else {
+            target = ((boolean[]) source).clone();
+        }
+        seen.put(source, target);
+        return target;
+    }
+
+    // 只处理常用的集合实现，用户的子类交给 ClassCopier，其他 JDK 集合交给 copyJdkCollection
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> newCollection(Class<?> type, Object source) {
+        int size = ((Collection<?>) source).size();
+        if (type == ArrayList.class) {
+            return new ArrayList<>(size);
+        } else if (type == LinkedList.class) {
+            return new LinkedList<>();
+        } else if (type == ArrayDeque.class) {
+            return new ArrayDeque<>(size);
+        } else if (type == HashSet.class) {
+            return new HashSet<>(Math.max(16, (int) (size / .75f) + 1));
+        } else if (type == LinkedHashSet.class) {
+            return new LinkedHashSet<>(Math.max(16, (int) (size / .75f) + 1));
+        } else if (type == TreeSet.class) {
+            return new TreeSet<>(((TreeSet<Object>) source).comparator());
+        } else if (type == PriorityQueue.class) {
+            return new PriorityQueue<>(Math.max(1, size), ((PriorityQueue<Object>) source).comparator());
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> newMap(Class<?> type, Object source) {
+        int size = ((Map<?, ?>) source).size();
+        if (type == HashMap.class) {
+            return new HashMap<>(Math.max(16, (int) (size / .75f) + 1));
+        } else if (type == LinkedHashMap.class) {
+            return new LinkedHashMap<>(Math.max(16, (int) (size / .75f) + 1));
+        } else if (type == TreeMap.class) {
+            return new TreeMap<>(((TreeMap<Object, Object>) source).comparator());
+        }
+        return null;
+    }
+
+    // record 的拷贝器：组件的访问方法和规范构造方法在构造时解析成 MethodHandle
+    private static final class RecordCopier {
+        private final MethodHandle[] accessors;
+        private final boolean[] shared;
+        // (Object[]) -> record，参数按组件的顺序排列
+        private final MethodHandle constructor;
+
+        RecordCopier(Class<?> type) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] types = new Class<?>[components.length];
+            accessors = new MethodHandle[components.length];
+            shared = new boolean[components.length];
+            try {
+                for (int i = 0; i < components.length; i++) {
+                    Method accessor = components[i].getAccessor();
+                    accessor.setAccessible(true);
+                    accessors[i] = lookup.unreflect(accessor).asType(MethodType.methodType(Object.class, Object.class));
+                    types[i] = components[i].getType();
+                    shared[i] = isImmutable(types[i]);
+                }
+                Constructor<?> ctor = type.getDeclaredConstructor(types);
+                ctor.setAccessible(true);
+                constructor = lookup.unreflectConstructor(ctor)
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot build copier for record " + type.getName(), e);
+            }
+        }
+
+        // record 要等所有组件都拷贝完才能创建，拷贝组件时遇到指回这个 record 的循环引用，会指向原来的 record
+        Object copy(Object source, IdentityHashMap<Object, Object> seen) {
+            seen.put(source, source);
+            try {
+                Object[] values = new Object[accessors.length];
+                for (int i = 0; i < accessors.length; i++) {
+                    Object value = (Object) accessors[i].invokeExact(source);
+                    values[i] = shared[i] ? value : DeepCopier.copy(value, seen);
+                }
+                Object target = (Object) constructor.invokeExact(values);
+                seen.put(source, target);
+                return target;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Deep copy failed for " + source.getClass().getName(), t);
+            }
+        }
+    }
+
+    // 单个类的拷贝器，构造时解析字段并生成 MethodHandle，之后每次拷贝不再反射
+    private static final class ClassCopier {
+        private static final MethodType FACTORY = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final boolean prototype;
+        // 继承自 JDK 集合的用户类：JDK 部分的状态通过集合的 API 拷贝
+        private final boolean collection;
+        private final boolean map;
+        // Prototype 子类：(source) -> 浅拷贝；其他类：(source) -> 无参构造的新实例
+        private final MethodHandle factory;
+        // (target, source) -> void，直接搬运的字段（基本类型、不可变类型）
+        private final MethodHandle[] plainCopies;
+        // 需要递归深拷贝的引用字段
+        private final MethodHandle[] getters;
+        private final MethodHandle[] setters;
+
+        ClassCopier(Class<?> type) {
+            prototype = Prototype.class.isAssignableFrom(type);
+            collection = Collection.class.isAssignableFrom(type);
+            map = Map.class.isAssignableFrom(type);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            List<MethodHandle> plain = new ArrayList<>();
+            List<MethodHandle> getterList = new ArrayList<>();
+            List<MethodHandle> setterList = new ArrayList<>();
+            try {
+                if (prototype) {
+                    factory = lookup.findVirtual(Prototype.class, "clonePrototype", MethodType.methodType(Prototype.class))
+                            .asType(FACTORY);
+                } else {
+                    Constructor<?> ctor;
+                    try {
+                        ctor = type.getDeclaredConstructor();
+                    } catch (NoSuchMethodException e) {
+                        throw new IllegalArgumentException(type.getName()
+                                + " must extend Prototype or declare a no-arg constructor to be deep copied");
+                    }
+                    ctor.setAccessible(true);
+                    factory = MethodHandles.dropArguments(lookup.unreflectConstructor(ctor), 0, Object.class)
+                            .asType(FACTORY);
+                }
+                // JDK 类的字段不可访问，也不属于用户定义的状态，遍历到第一个 JDK 父类为止
+                for (Class<?> c = type; c != null && !isJdkClass(c); c = c.getSuperclass()) {
+                    for (Field f : c.getDeclaredFields()) {
+                        if (Modifier.isStatic(f.getModifiers())) {
+                            continue;
+                        }
+                        f.setAccessible(true);
+                        boolean shared = isImmutable(f.getType());
+                        if (shared && prototype) {
+                            // 浅拷贝已经带上了这个字段
+                            continue;
+                        }
+                        MethodHandle getter = lookup.unreflectGetter(f);
+                        MethodHandle setter = lookup.unreflectSetter(f);
+                        if (shared) {
+                            plain.add(MethodHandles.filterArguments(setter, 1, getter).asType(SETTER));
+                        } else {
+                            getterList.add(getter.asType(GETTER));
+                            setterList.add(setter.asType(SETTER));
+                        }
+                    }
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot build copier for " + type.getName(), e);
+            }
+            plainCopies = plain.toArray(new MethodHandle[0]);
+            getters = getterList.toArray(new MethodHandle[0]);
+            setters = setterList.toArray(new MethodHandle[0]);
+        }
+
+        @SuppressWarnings("unchecked")
+        Object copy(Object source, IdentityHashMap<Object, Object> seen) {
+            try {
+                Object target = (Object) factory.invokeExact(source);
+                seen.put(source, target);
+                for (MethodHandle h : plainCopies) {
+                    h.invokeExact(target, source);
+                }
+                for (int i = 0; i < getters.length; i++) {
+                    Object value = (Object) getters[i].invokeExact(source);
+                    setters[i].invokeExact(target, DeepCopier.copy(value, seen));
+                }
+                if (collection) {
+                    copyElements((Collection<?>) source, (Collection<Object>) target, seen);
+                } else if (map) {
+                    copyEntries((Map<?, ?>) source, (Map<Object, Object>) target, seen);
+                }
+                return target;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Deep copy failed for " + source.getClass().getName(), t);
+            }
+        }
+
+        // 无参构造方法可能已经放入了一些元素，先清空再按原来的顺序加入
+        private static void copyElements(Collection<?> source, Collection<Object> target,
+                                         IdentityHashMap<Object, Object> seen) {
+            target.clear();
+            for (Object e : source) {
+                target.add(DeepCopier.copy(e, seen));
+            }
+        }
+
+        private static void copyEntries(Map<?, ?> source, Map<Object, Object> target,
+                                        IdentityHashMap<Object, Object> seen) {
+            target.clear();
+            for (Map.Entry<?, ?> e : source.entrySet()) {
+                target.put(DeepCopier.copy(e.getKey(), seen), DeepCopier.copy(e.getValue(), seen));
+            }
+        }
+    }
+}
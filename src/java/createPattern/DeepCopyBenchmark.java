@@ -0,0 +1,201 @@
+package src.java.createPattern;
+
+/*
+深拷贝性能对比：DeepCopier、Java 序列化往返、基于 Field.get/set 的反射拷贝。
+测试对象是一个带数组、集合和循环引用（图层指回画布）的 Prototype 子类。
+
+用法：java src.java.createPattern.DeepCopyBenchmark [迭代次数]
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+// 带引用类型字段的原型：浅拷贝会共享 pixels、layers、tags
+class CanvasPrototype extends Prototype implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String name;
+    private int[] pixels;
+    private List<Layer> layers = new ArrayList<>();
+    private Map<String, Integer> tags = new HashMap<>();
+
+    public CanvasPrototype(String name, int pixelCount, int layerCount) {
+        this.name = name;
+        this.pixels = new int[pixelCount];
+        for (int i = 0; i < pixelCount; i++) {
+            pixels[i] = i * 31;
+        }
+        for (int i = 0; i < layerCount; i++) {
+            layers.add(new Layer("layer-" + i, this));
+            tags.put("tag-" + i, i);
+        }
+    }
+
+    @Override
+    public Prototype clone() {
+        return clonePrototype();
+    }
+
+    @Override
+    public String getDetails() {
+        return "Canvas: " + name + ", Pixels: " + pixels.length + ", Layers: " + layers.size();
+    }
+
+    int[] getPixels() {
+        return pixels;
+    }
+
+    List<Layer> getLayers() {
+        return layers;
+    }
+}
+
+class Layer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String name;
+    private double[] weights = new double[16];
+    private CanvasPrototype owner;
+
+    Layer() {
+    }
+
+    Layer(String name, CanvasPrototype owner) {
+        this.name = name;
+        this.owner = owner;
+    }
+
+    CanvasPrototype getOwner() {
+        return owner;
+    }
+}
+
+// 对照组：每次拷贝都通过 Field.get/set 反射访问字段
+class ReflectiveCopier {
+    @SuppressWarnings("unchecked")
+    static <T> T copy(T source) {
+        return (T) copy(source, new IdentityHashMap<>());
+    }
+
+    private static Object copy(Object source, IdentityHashMap<Object, Object> seen) {
+        if (source == null || DeepCopier.isImmutable(source.getClass())) {
+            return source;
+        }
+        Object done = seen.get(source);
+        if (done != null) {
+            return done;
+        }
+        try {
+            Class<?> type = source.getClass();
+            if (type.isArray()) {
+                int length = Array.getLength(source);
+                Object target = Array.newInstance(type.getComponentType(), length);
+                seen.put(source, target);
+                if (type.getComponentType().isPrimitive()) {
+                    // 基本类型数组整体复制，不逐个装箱
+                    System.arraycopy(source, 0, target, 0, length);
+                    return target;
+                }
+                for (int i = 0; i < length; i++) {
+                    Array.set(target, i, copy(Array.get(source, i), seen));
+                }
+                return target;
+            }
+            if (source instanceof ArrayList) {
+                ArrayList<Object> target = new ArrayList<>();
+                seen.put(source, target);
+                for (Object e : (ArrayList<?>) source) {
+                    target.add(copy(e, seen));
+                }
+                return target;
+            }
+            if (source instanceof HashMap) {
+                HashMap<Object, Object> target = new HashMap<>();
+                seen.put(source, target);
+                for (Map.Entry<?, ?> e : ((HashMap<?, ?>) source).entrySet()) {
+                    target.put(copy(e.getKey(), seen), copy(e.getValue(), seen));
+                }
+                return target;
+            }
+            Object target = source instanceof Prototype
+                    ? ((Prototype) source).clonePrototype()
+                    : type.getDeclaredConstructor().newInstance();
+            seen.put(source, target);
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    f.setAccessible(true);
+                    f.set(target, copy(f.get(source), seen));
+                }
+            }
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
+
+class DeepCopyBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        CanvasPrototype canvas = new CanvasPrototype("template", 1024, 32);
+
+        verify(canvas, (CanvasPrototype) canvas.deepClone());
+
+        measure("DeepCopier", canvas, DeepCopier::copy, iterations);
+        measure("Reflection", canvas, ReflectiveCopier::copy, iterations);
+        measure("Serialization", canvas, DeepCopyBenchmark::serialCopy, Math.max(1, iterations / 10));
+    }
+
+    private static void verify(CanvasPrototype original, CanvasPrototype copy) {
+        if (copy == original || copy.getPixels() == original.getPixels()
+                || copy.getLayers() == original.getLayers()
+                || copy.getLayers().get(0).getOwner() != copy) {
+            throw new IllegalStateException("deep copy shares state with the original");
+        }
+    }
+
+    private static void measure(String name, CanvasPrototype canvas, UnaryOperator<Object> copier, int iterations) {
+        // 预热
+        for (int i = 0; i < iterations; i++) {
+            sink = copier.apply(canvas);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = copier.apply(canvas);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-14s %10.2f us/copy%n", name, elapsed / 1000.0 / iterations);
+    }
+
+    private static Object serialCopy(Object source) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(source);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
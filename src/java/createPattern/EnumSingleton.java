@@ -0,0 +1,10 @@
+package src.java.createPattern;
+
+// 枚举单例：天然防止反射和反序列化创建新实例
+enum EnumSingleton {
+    INSTANCE;
+
+    public static EnumSingleton getInstance() {
+        return INSTANCE;
+    }
+}
@@ -1,15 +1,21 @@
 package src.java.createPattern;
 
-// 简单工厂
+/*
+实例策略 InstancePolicy / ProductPolicy 和按策略创建产品的 PolicyShapeFactory 分别在同名的文件中。
+ */
+
+import java.util.function.Supplier;
+
+// 简单工厂：产品在注册表中登记，新增产品只需要多注册一行，不用修改工厂方法
 class SimpleFactory {
+    private static final ShapeRegistry REGISTRY = new ShapeRegistry()
+            .register("circle", Circle.class, Circle::new)
+            .register("square", Square.class, Square::new)
+            .freeze();
+
+    // 未知的类型抛出 IllegalArgumentException
     public Shape CreatePizza(String ordertype) {
-        Shape shape = null;
-        if (ordertype.equals("circle")) {
-            shape = new Circle();
-        } else if (ordertype.equals("square")) {
-            shape = new Square();
-        }
-        return shape;
+        return REGISTRY.create(ordertype);
     }
 }
 
@@ -19,7 +25,8 @@ interface Shape {
     void draw();
 }
 
-// 具体产品 - 圆形
+// 具体产品 - 圆形，没有任何状态，可以共享同一个实例
+@ProductPolicy(InstancePolicy.SHARED)
 class Circle implements Shape {
     @Override
     public void draw() {
@@ -27,7 +34,8 @@ class Circle implements Shape {
     }
 }
 
-// 具体产品 - 正方形
+// 具体产品 - 正方形，没有任何状态，可以共享同一个实例
+@ProductPolicy(InstancePolicy.SHARED)
 class Square implements Shape {
     @Override
     public void draw() {
@@ -38,24 +46,44 @@ class Square implements Shape {
 // 抽象工厂
 interface ShapeFactory {
     Shape createShape();
+
+    // 工厂对其产品采用的实例策略
+    default InstancePolicy policy() {
+        return InstancePolicy.NEW_PER_CALL;
+    }
 }
 
 // 具体工厂 - 创建圆形
 class CircleFactory implements ShapeFactory {
+    private final Supplier<Shape> circles = policy().supplier(Circle::new);
+
     @Override
     public Shape createShape() {
-        return new Circle();
+        return circles.get();
+    }
+
+    @Override
+    public InstancePolicy policy() {
+        return InstancePolicy.of(Circle.class);
     }
 }
 
 // 具体工厂 - 创建正方形
 class SquareFactory implements ShapeFactory {
+    private final Supplier<Shape> squares = policy().supplier(Square::new);
+
     @Override
     public Shape createShape() {
-        return new Square();
+        return squares.get();
+    }
+
+    @Override
+    public InstancePolicy policy() {
+        return InstancePolicy.of(Square.class);
     }
 }
 
+
 class Factory {
     public static void main(String[] args) {
         ShapeFactory circleFactory = new CircleFactory();
@@ -67,5 +95,3 @@ class Factory {
         square.draw(); // 输出：Square
     }
 }
-
-
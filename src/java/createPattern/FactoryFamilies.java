@@ -0,0 +1,98 @@
+package src.java.createPattern;
+
+/*
+产品族缓存：运行时根据族 id 选择具体工厂，每个 id 只解析一次。
+
+原来的用法是每个请求都重新决定用哪个工厂（读配置、反射加载类等），再逐个调用 createProductA / createProductB。
+FactoryFamilies 把“族 id -> 工厂”的解析结果缓存在 ConcurrentHashMap 中，命中时只是一次 get；
+配合 AbstractFactory.createFamilies，一次调用就能把 N 组配套产品写进调用方提供的数组里。
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public class FactoryFamilies {
+    private final Function<String, ? extends AbstractFactory> resolver;
+    private final Map<String, AbstractFactory> resolved = new ConcurrentHashMap<>();
+
+    // resolver 对每个已知的族 id 只调用一次，返回 null 表示未知的产品族；resolver 中不能再调用 forFamily
+    public FactoryFamilies(Function<String, ? extends AbstractFactory> resolver) {
+        this.resolver = resolver;
+    }
+
+    // 按类名反射创建工厂，是“每次请求都重新解析”时最常见的写法
+    public static AbstractFactory resolveByClassName(String className) {
+        try {
+            Class<?> type = Class.forName(className);
+            if (!AbstractFactory.class.isAssignableFrom(type)) {
+                return null;
+            }
+            return (AbstractFactory) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // 同一个族 id 并发解析时只有一个线程调用 resolver，其余线程等待它的结果
+    public AbstractFactory forFamily(String familyId) {
+        AbstractFactory factory = resolved.get(familyId);
+        if (factory == null) {
+            // resolver 返回 null 时 computeIfAbsent 不会保存任何映射，下次请求会再解析一次
+            factory = resolved.computeIfAbsent(familyId, resolver);
+            if (factory == null) {
+                throw new IllegalArgumentException("Unknown product family: " + familyId);
+            }
+        }
+        return factory;
+    }
+
+    public void createFamilies(String familyId, ProductA[] productsA, ProductB[] productsB, int offset, int count) {
+        forFamily(familyId).createFamilies(productsA, productsB, offset, count);
+    }
+}
+
+/*
+批量初始化产品族的开销对比：
+逐个创建：每批（一个请求）按类名反射解析一次工厂，再逐个调用 createProductA / createProductB。
+批量创建：FactoryFamilies 缓存解析结果，一次 createFamilies 填满整批数组。
+用法：java src.java.createPattern.FactoryFamiliesBenchmark [批次数] [每批数量]
+ */
+class FactoryFamiliesBenchmark {
+    private static final String[] FAMILIES = {
+            ConcreteFactory1.class.getName(), ConcreteFactory2.class.getName()};
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int batches = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        ProductA[] productsA = new ProductA[batchSize];
+        ProductB[] productsB = new ProductB[batchSize];
+        FactoryFamilies families = new FactoryFamilies(FactoryFamilies::resolveByClassName);
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int b = 0; b < batches; b++) {
+                AbstractFactory factory = FactoryFamilies.resolveByClassName(FAMILIES[b & 1]);
+                for (int i = 0; i < batchSize; i++) {
+                    productsA[i] = factory.createProductA();
+                    productsB[i] = factory.createProductB();
+                }
+            }
+            long perObject = System.nanoTime() - start;
+            sink = productsA[batchSize - 1];
+
+            start = System.nanoTime();
+            for (int b = 0; b < batches; b++) {
+                families.createFamilies(FAMILIES[b & 1], productsA, productsB, 0, batchSize);
+            }
+            long batched = System.nanoTime() - start;
+            sink = productsB[batchSize - 1];
+
+            long pairs = (long) batches * batchSize;
+            System.out.printf("round %d  per-request resolve: %7.2f ns/pair | cached batch: %7.2f ns/pair%n",
+                    round, perObject / (double) pairs, batched / (double) pairs);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package src.java.createPattern;
+
+/*
+三种实例策略下循环创建 1 亿个 Circle 的对比：分配字节数、分配速率、GC 次数和 GC 累计耗时。
+分配量来自 com.sun.management.ThreadMXBean，GC 数据来自 GarbageCollectorMXBean。
+创建出的对象写入一个小数组，防止 JIT 的逃逸分析把分配消除掉。
+
+用法：java src.java.createPattern.FactoryPolicyBenchmark [创建次数]
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+class FactoryPolicyBenchmark {
+    private static final Shape[] SINK = new Shape[1024];
+
+    public static void main(String[] args) {
+        long n = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+
+        // 预热
+        for (InstancePolicy policy : InstancePolicy.values()) {
+            run(new PolicyShapeFactory(Circle::new, policy), Math.min(n, 5_000_000L));
+        }
+
+        System.out.printf("%-14s %14s %12s %10s %10s %10s%n",
+                "policy", "bytes/shape", "MB/s", "gc count", "gc ms", "ns/shape");
+        for (InstancePolicy policy : InstancePolicy.values()) {
+            ShapeFactory factory = new PolicyShapeFactory(Circle::new, policy);
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+
+            run(factory, n);
+
+            long elapsed = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+            System.out.printf("%-14s %14.2f %12.1f %10d %10d %10.2f%n", policy,
+                    bytes / (double) n, bytes / 1e6 / (elapsed / 1e9),
+                    gcCount() - gcCount, gcMillis() - gcMillis, elapsed / (double) n);
+        }
+        System.out.println("CircleFactory policy: " + new CircleFactory().policy());
+    }
+
+    private static void run(ShapeFactory factory, long n) {
+        for (long i = 0; i < n; i++) {
+            SINK[(int) i & (SINK.length - 1)] = factory.createShape();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
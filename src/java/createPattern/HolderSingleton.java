@@ -0,0 +1,16 @@
+package src.java.createPattern;
+
+// 静态内部类（Initialization-on-demand holder）：由 JVM 的类初始化保证线程安全，第一次调用 getInstance 时才加载 Holder
+class HolderSingleton {
+    private HolderSingleton() {
+        // 私有构造方法，防止外部实例化
+    }
+
+    private static class Holder {
+        private static final HolderSingleton INSTANCE = new HolderSingleton();
+    }
+
+    public static HolderSingleton getInstance() {
+        return Holder.INSTANCE;
+    }
+}
@@ -0,0 +1,38 @@
+package src.java.createPattern;
+
+import java.util.function.Supplier;
+
+// 产品实例的提供方式
+enum InstancePolicy {
+    // 无状态产品：所有调用方共享同一个实例，不再分配
+    SHARED {
+        @Override
+        <T> Supplier<T> supplier(Supplier<T> constructor) {
+            T instance = constructor.get();
+            return () -> instance;
+        }
+    },
+    // 线程内可复用但不能跨线程共享的产品：每个线程一个实例
+    THREAD_LOCAL {
+        @Override
+        <T> Supplier<T> supplier(Supplier<T> constructor) {
+            return ThreadLocal.withInitial(constructor)::get;
+        }
+    },
+    // 有状态产品：每次调用都新建
+    NEW_PER_CALL {
+        @Override
+        <T> Supplier<T> supplier(Supplier<T> constructor) {
+            return constructor;
+        }
+    };
+
+    // 按策略包装构造方法，工厂创建时调用一次，之后 createShape 只是一次 get
+    abstract <T> Supplier<T> supplier(Supplier<T> constructor);
+
+    // 读取产品类上声明的策略，没有声明时按有状态处理
+    static InstancePolicy of(Class<?> productType) {
+        ProductPolicy policy = productType.getAnnotation(ProductPolicy.class);
+        return policy == null ? NEW_PER_CALL : policy.value();
+    }
+}
@@ -0,0 +1,283 @@
+package src.java.createPattern;
+
+/*
+通用对象池，以及包装任意 AbstractFactory 的池化工厂 PooledFactory。
+
+ConcreteFactory1 / ConcreteFactory2 每次都 new 一个产品，高频率地创建短生命周期的对象会给 GC 带来很大压力。
+ObjectPool 的结构分两层：
+线程本地空闲列表：同一个线程借出、归还对象时不需要任何同步，这是最常见的路径。
+共享溢出栈：线程本地列表满了之后归还到一个无锁的 Treiber 栈（CAS 操作栈顶），其他线程本地为空时可以从这里取。
+两层都满时直接丢弃对象，由 GC 回收，所以池的大小是有界的。
+对象归还时先调用 reset 钩子清理状态。
+
+泄漏检测（可选）：借出时为对象登记一个弱引用，归还时注销。
+如果对象在没有归还的情况下被 GC 回收，弱引用会进入引用队列，此时就能确认发生了泄漏，并报告借出时的调用栈。
+    登记表同时记录了哪些对象正在被借出，重复归还（或归还不是从这个池借出的对象）会抛出 IllegalStateException，
+    否则同一个对象会两次进入空闲列表，之后被两个调用方同时借出。未开启时不做这项检查。
+开启后每次借出都要记录调用栈，开销较大，适合在测试或排查问题时使用。
+命中、未命中、归还、泄漏次数用 LongAdder 统计，可以直接用来观察池化对 GC 压力的改善。
+ */
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class ObjectPool<T> {
+    private final Supplier<? extends T> factory;
+    private final Consumer<? super T> resetter;
+    private final int localCapacity;
+    private final int sharedCapacity;
+    private final ThreadLocal<ArrayDeque<T>> local = ThreadLocal.withInitial(ArrayDeque::new);
+
+    // 共享溢出栈
+    private final AtomicReference<Node<T>> top = new AtomicReference<>();
+    private final AtomicInteger sharedSize = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    // 泄漏检测，未开启时为 null
+    private final Map<LeakRef<T>, Throwable> borrowed;
+    private final ReferenceQueue<T> collected;
+    private final Consumer<Throwable> leakListener;
+
+    public ObjectPool(Supplier<? extends T> factory, Consumer<? super T> resetter, int localCapacity, int sharedCapacity) {
+        this(factory, resetter, localCapacity, sharedCapacity, null);
+    }
+
+    // leakListener 不为 null 时开启泄漏检测，参数是记录了借出位置的 Throwable
+    public ObjectPool(Supplier<? extends T> factory, Consumer<? super T> resetter,
+                      int localCapacity, int sharedCapacity, Consumer<Throwable> leakListener) {
+        this.factory = factory;
+        this.resetter = resetter;
+        this.localCapacity = localCapacity;
+        this.sharedCapacity = sharedCapacity;
+        this.leakListener = leakListener;
+        this.borrowed = leakListener == null ? null : new ConcurrentHashMap<>();
+        this.collected = leakListener == null ? null : new ReferenceQueue<>();
+    }
+
+    public T acquire() {
+        T obj = local.get().pollLast();
+        if (obj == null) {
+            obj = popShared();
+        }
+        if (obj != null) {
+            hits.increment();
+        } else {
+            obj = factory.get();
+            misses.increment();
+        }
+        if (borrowed != null) {
+            expungeLeaks();
+            borrowed.put(new LeakRef<>(obj, collected), new Throwable("Object acquired here was never released"));
+        }
+        return obj;
+    }
+
+    public void release(T obj) {
+        if (obj == null) {
+            return;
+        }
+        if (borrowed != null && borrowed.remove(new LeakRef<>(obj, null)) == null) {
+            throw new IllegalStateException("Object is not borrowed from this pool (released twice?): "
+                    + obj.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(obj)));
+        }
+        resetter.accept(obj);
+        releases.increment();
+        ArrayDeque<T> free = local.get();
+        if (free.size() < localCapacity) {
+            free.addLast(obj);
+        } else if (!pushShared(obj)) {
+            discarded.increment();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long releases() {
+        return releases.sum();
+    }
+
+    public long discarded() {
+        return discarded.sum();
+    }
+
+    // 共享栈中空闲对象的数量。线程本地列表中的对象只能被所属的线程再次借出，线程结束后随线程一起被回收，
+    // 无法在这里准确地统计，所以不计入
+    public long size() {
+        return sharedSize.get();
+    }
+
+    public long leaks() {
+        if (borrowed != null) {
+            expungeLeaks();
+        }
+        return leaks.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits() + ", misses=" + misses() + ", releases=" + releases()
+                + ", discarded=" + discarded() + ", size=" + size() + ", leaks=" + leaks();
+    }
+
+    private T popShared() {
+        Node<T> head;
+        do {
+            head = top.get();
+            if (head == null) {
+                return null;
+            }
+        } while (!top.compareAndSet(head, head.next));
+        sharedSize.decrementAndGet();
+        return head.value;
+    }
+
+    private boolean pushShared(T obj) {
+        if (sharedSize.incrementAndGet() > sharedCapacity) {
+            sharedSize.decrementAndGet();
+            return false;
+        }
+        // 每次 push 都用新节点，被 pop 的节点不会再次入栈，因此不存在 ABA 问题
+        Node<T> node = new Node<>(obj);
+        do {
+            node.next = top.get();
+        } while (!top.compareAndSet(node.next, node));
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeLeaks() {
+        LeakRef<T> ref;
+        while ((ref = (LeakRef<T>) collected.poll()) != null) {
+            Throwable site = borrowed.remove(ref);
+            if (site != null) {
+                leaks.increment();
+                leakListener.accept(site);
+            }
+        }
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private Node<T> next;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+
+    // 按对象身份比较的弱引用，借出登记和归还注销用同一个 key
+    private static final class LeakRef<T> extends WeakReference<T> {
+        private final int hash;
+
+        LeakRef(T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LeakRef)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((LeakRef<?>) o).get();
+        }
+    }
+}
+
+// 池化工厂：包装任意 AbstractFactory，产品用完后通过 release 归还
+class PooledFactory implements AbstractFactory {
+    private final ObjectPool<ProductA> productsA;
+    private final ObjectPool<ProductB> productsB;
+
+    PooledFactory(AbstractFactory delegate, int localCapacity, int sharedCapacity, Consumer<Throwable> leakListener) {
+        this.productsA = new ObjectPool<>(delegate::createProductA, ProductA::reset, localCapacity, sharedCapacity, leakListener);
+        this.productsB = new ObjectPool<>(delegate::createProductB, ProductB::reset, localCapacity, sharedCapacity, leakListener);
+    }
+
+    @Override
+    public ProductA createProductA() {
+        return productsA.acquire();
+    }
+
+    @Override
+    public ProductB createProductB() {
+        return productsB.acquire();
+    }
+
+    public void release(ProductA product) {
+        productsA.release(product);
+    }
+
+    public void release(ProductB product) {
+        productsB.release(product);
+    }
+
+    public ObjectPool<ProductA> poolA() {
+        return productsA;
+    }
+
+    public ObjectPool<ProductB> poolB() {
+        return productsB;
+    }
+}
+
+// 客户端代码：多个线程高频借出和归还产品，最后故意泄漏几个对象
+class PooledFactoryExample {
+    public static void main(String[] args) throws InterruptedException {
+        PooledFactory factory = new PooledFactory(new ConcreteFactory1(), 64, 1024,
+                site -> System.out.println("leak detected: " + site.getMessage()));
+
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 1_000_000; i++) {
+                    ProductA a = factory.createProductA();
+                    ProductB b = factory.createProductB();
+                    factory.release(a);
+                    factory.release(b);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+
+        for (int i = 0; i < 3; i++) {
+            factory.createProductA();
+        }
+        System.gc();
+        Thread.sleep(100);
+
+        System.out.println("ProductA pool: " + factory.poolA());
+        System.out.println("ProductB pool: " + factory.poolB());
+    }
+}
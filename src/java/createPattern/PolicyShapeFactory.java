@@ -0,0 +1,24 @@
+package src.java.createPattern;
+
+import java.util.function.Supplier;
+
+// 按指定策略提供任意产品的工厂，用于覆盖产品上声明的策略
+class PolicyShapeFactory implements ShapeFactory {
+    private final InstancePolicy policy;
+    private final Supplier<? extends Shape> shapes;
+
+    PolicyShapeFactory(Supplier<? extends Shape> constructor, InstancePolicy policy) {
+        this.policy = policy;
+        this.shapes = policy.supplier(constructor);
+    }
+
+    @Override
+    public Shape createShape() {
+        return shapes.get();
+    }
+
+    @Override
+    public InstancePolicy policy() {
+        return policy;
+    }
+}
@@ -0,0 +1,13 @@
+package src.java.createPattern;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 在产品类上声明实例策略
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@interface ProductPolicy {
+    InstancePolicy value();
+}
@@ -15,7 +15,7 @@ package src.java.createPattern;
 但是使用原型模式也需要考虑到如果对象的内部状态包含了引用类型的成员变量，那么实现深拷贝就会变得较为复杂，需要考虑引用类型对象的克隆问题。
  */
 
-import java.util.Scanner;
+import src.java.util.FastReader;
 
 public abstract class Prototype implements Cloneable {
     public abstract Prototype clone();
@@ -30,6 +30,11 @@ public abstract class Prototype implements Cloneable {
             return null;
         }
     }
+
+    // 深拷贝：引用类型的字段也会被复制，克隆体不再和原型共享可变状态
+    public Prototype deepClone() {
+        return DeepCopier.copy(this);
+    }
 }
 
 // 具体矩形原型类
@@ -51,6 +56,18 @@ class RectanglePrototype extends Prototype {
         return clonePrototype();
     }
 
+    public String getColor() {
+        return color;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
     // 获取矩形的详细信息
     @Override
     public String getDetails() {
@@ -58,18 +75,19 @@ class RectanglePrototype extends Prototype {
     }
 }
 
+
 class PrototypeExample{
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
+        FastReader reader = new FastReader(System.in);
 
         // 读取需要创建的矩形数量
-        int N = scanner.nextInt();
+        int N = reader.nextInt();
 
         // 读取每个矩形的属性信息并创建矩形对象
         for (int i = 0; i < N; i++) {
-            String color = scanner.next();
-            int width = scanner.nextInt();
-            int height = scanner.nextInt();
+            String color = reader.nextToken();
+            int width = reader.nextInt();
+            int height = reader.nextInt();
 
             // 创建原型对象
             Prototype originalRectangle = new RectanglePrototype(color, width, height);
@@ -80,4 +98,3 @@ class PrototypeExample{
         }
     }
 }
-
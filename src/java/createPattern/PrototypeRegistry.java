@@ -0,0 +1,155 @@
+package src.java.createPattern;
+
+/*
+原型注册表：按名字保存标准原型，并为每个原型预先克隆好一批对象放在有界池中。
+
+PrototypeExample 每处理一行输入就新建一个原型再克隆，克隆的开销全部落在请求路径上。
+注册表把克隆工作挪到后台线程：
+get(key)：优先从池中取一个现成的克隆，池空时才当场克隆。
+cloneMany(key, n)：一次性取出 n 个克隆，先用 drainTo 批量取池中的对象，不足的部分当场补齐。
+池中数量低于容量的一半时，提交一次后台补充任务，同一个 key 同时只会有一个补充任务在执行。
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PrototypeRegistry implements AutoCloseable {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "prototype-refill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 注册一个原型，poolSize 为预克隆池的容量，0 表示不预克隆
+    public void register(String key, Prototype prototype, int poolSize) {
+        if (prototype == null) {
+            throw new IllegalArgumentException("prototype must not be null");
+        }
+        Entry entry = new Entry(prototype, poolSize);
+        entries.put(key, entry);
+        scheduleRefill(entry);
+    }
+
+    public void unregister(String key) {
+        entries.remove(key);
+    }
+
+    public Prototype get(String key) {
+        Entry entry = entry(key);
+        Prototype p = entry.pool == null ? null : entry.pool.poll();
+        if (p == null) {
+            p = entry.prototype.clone();
+        }
+        maybeRefill(entry);
+        return p;
+    }
+
+    public Prototype[] cloneMany(String key, int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative count: " + n);
+        }
+        Entry entry = entry(key);
+        Prototype[] result = new Prototype[n];
+        int filled = 0;
+        if (entry.pool != null && n > 0) {
+            // drainTo 只加一次锁，比逐个 poll 便宜
+            List<Prototype> batch = new ArrayList<>(Math.min(n, entry.capacity));
+            entry.pool.drainTo(batch, n);
+            for (Prototype p : batch) {
+                result[filled++] = p;
+            }
+        }
+        for (; filled < n; filled++) {
+            result[filled] = entry.prototype.clone();
+        }
+        maybeRefill(entry);
+        return result;
+    }
+
+    // 当前池中可直接取用的克隆数量
+    public int pooled(String key) {
+        Entry entry = entry(key);
+        return entry.pool == null ? 0 : entry.pool.size();
+    }
+
+    @Override
+    public void close() {
+        refiller.shutdownNow();
+    }
+
+    private Entry entry(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown prototype: " + key);
+        }
+        return entry;
+    }
+
+    private void maybeRefill(Entry entry) {
+        if (entry.pool != null && entry.pool.size() < entry.capacity / 2) {
+            scheduleRefill(entry);
+        }
+    }
+
+    private void scheduleRefill(Entry entry) {
+        if (entry.pool == null || !entry.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refiller.execute(() -> {
+                try {
+                    while (entry.pool.remainingCapacity() > 0) {
+                        if (!entry.pool.offer(entry.prototype.clone())) {
+                            break;
+                        }
+                    }
+                } finally {
+                    entry.refilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 注册表已关闭，池不再补充，get 会退化为当场克隆
+            entry.refilling.set(false);
+        }
+    }
+
+    private static class Entry {
+        private final Prototype prototype;
+        private final int capacity;
+        private final ArrayBlockingQueue<Prototype> pool;
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        Entry(Prototype prototype, int capacity) {
+            this.prototype = prototype;
+            this.capacity = capacity;
+            this.pool = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : null;
+        }
+    }
+}
+
+// 客户端代码
+class PrototypeRegistryExample {
+    public static void main(String[] args) throws InterruptedException {
+        try (PrototypeRegistry registry = new PrototypeRegistry()) {
+            registry.register("red-small", new RectanglePrototype("Red", 10, 20), 1024);
+            registry.register("blue-large", new RectanglePrototype("Blue", 300, 400), 1024);
+
+            // 等待后台预克隆完成
+            Thread.sleep(100);
+
+            System.out.println(registry.get("red-small").getDetails());
+
+            Prototype[] batch = registry.cloneMany("blue-large", 5000);
+            System.out.println(batch.length + " x " + batch[batch.length - 1].getDetails());
+            System.out.println("pooled after batch: " + registry.pooled("blue-large"));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package src.java.createPattern;
+
+/*
+列式（struct-of-arrays）矩形存储：用来保存数百万个 RectanglePrototype 的数据。
+
+每个 RectanglePrototype 对象都有对象头，再加上指向 color 字符串的引用，数量一大对象头和指针跳转就占了大部分内存和扫描时间。
+RectangleStore 把同一个字段的值放在一个基本类型数组里：
+width、height：int[] 列。
+color：字典编码，不同的颜色字符串只保存一份，每行只存一个 int 编号。
+appendClone / appendAll：按列批量复制（Arrays.fill / System.arraycopy），不创建任何对象。
+view(i)：返回轻量的行视图，只包含 store 和下标；formatDetails 直接写入调用方复用的 StringBuilder，不产生临时字符串。
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RectangleStore {
+    private int size;
+    private int[] widths;
+    private int[] heights;
+    private int[] colorIds;
+
+    // 颜色字典
+    private final Map<String, Integer> colorIndex = new HashMap<>();
+    private final List<String> colors = new ArrayList<>();
+
+    public RectangleStore() {
+        this(16);
+    }
+
+    public RectangleStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        widths = new int[capacity];
+        heights = new int[capacity];
+        colorIds = new int[capacity];
+    }
+
+    public int append(String color, int width, int height) {
+        ensureCapacity(size + 1);
+        widths[size] = width;
+        heights[size] = height;
+        colorIds[size] = encode(color);
+        return size++;
+    }
+
+    public int append(RectanglePrototype rectangle) {
+        return append(rectangle.getColor(), rectangle.getWidth(), rectangle.getHeight());
+    }
+
+    // 把第 index 行克隆 count 次追加到末尾，返回第一个新行的下标
+    public int appendClone(int index, int count) {
+        checkIndex(index);
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative count: " + count);
+        }
+        ensureCapacity(Math.addExact(size, count));
+        int first = size;
+        Arrays.fill(widths, first, first + count, widths[index]);
+        Arrays.fill(heights, first, first + count, heights[index]);
+        Arrays.fill(colorIds, first, first + count, colorIds[index]);
+        size += count;
+        return first;
+    }
+
+    // 批量追加另一个存储中的所有行，颜色编号需要重新映射到本存储的字典
+    public void appendAll(RectangleStore other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.widths, 0, widths, size, other.size);
+        System.arraycopy(other.heights, 0, heights, size, other.size);
+        if (other == this) {
+            System.arraycopy(colorIds, 0, colorIds, size, other.size);
+        } else {
+            int[] remap = new int[other.colors.size()];
+            for (int i = 0; i < remap.length; i++) {
+                remap[i] = encode(other.colors.get(i));
+            }
+            for (int i = 0; i < other.size; i++) {
+                colorIds[size + i] = remap[other.colorIds[i]];
+            }
+        }
+        size += other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int distinctColors() {
+        return colors.size();
+    }
+
+    public String getColor(int index) {
+        checkIndex(index);
+        return colors.get(colorIds[index]);
+    }
+
+    public int getWidth(int index) {
+        checkIndex(index);
+        return widths[index];
+    }
+
+    public int getHeight(int index) {
+        checkIndex(index);
+        return heights[index];
+    }
+
+    public void setSize(int index, int width, int height) {
+        checkIndex(index);
+        widths[index] = width;
+        heights[index] = height;
+    }
+
+    public RectangleView view(int index) {
+        checkIndex(index);
+        return new RectangleView(this, index);
+    }
+
+    // 与 RectanglePrototype.getDetails 输出相同，但写入调用方复用的缓冲区
+    public StringBuilder formatDetails(int index, StringBuilder out) {
+        checkIndex(index);
+        return out.append("Color: ").append(colors.get(colorIds[index]))
+                .append(", Width: ").append(widths[index])
+                .append(", Height: ").append(heights[index]);
+    }
+
+    public RectanglePrototype toPrototype(int index) {
+        return new RectanglePrototype(getColor(index), getWidth(index), getHeight(index));
+    }
+
+    private int encode(String color) {
+        Integer id = colorIndex.get(color);
+        if (id == null) {
+            id = colors.size();
+            colors.add(color);
+            colorIndex.put(color, id);
+        }
+        return id;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > widths.length) {
+            int capacity = Math.max(required, widths.length + (widths.length >> 1));
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            colorIds = Arrays.copyOf(colorIds, capacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+}
+
+// 行视图：不复制数据，读写都直接作用在列上
+class RectangleView {
+    private final RectangleStore store;
+    private final int index;
+
+    RectangleView(RectangleStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    public String getColor() {
+        return store.getColor(index);
+    }
+
+    public int getWidth() {
+        return store.getWidth(index);
+    }
+
+    public int getHeight() {
+        return store.getHeight(index);
+    }
+
+    public String getDetails() {
+        return store.formatDetails(index, new StringBuilder(48)).toString();
+    }
+}
+
+/*
+内存和扫描吞吐量对比：List<RectanglePrototype> 与 RectangleStore。
+用法：java src.java.createPattern.RectangleStoreBenchmark [矩形数量]
+ */
+class RectangleStoreBenchmark {
+    private static final String[] COLORS = {"Red", "Green", "Blue", "Yellow", "Black", "White"};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        long base = usedHeap();
+        List<RectanglePrototype> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // 颜色字符串来自解析结果时通常是各自独立的对象，这里用 new String 模拟
+            list.add(new RectanglePrototype(new String(COLORS[i % COLORS.length]), i % 1000, i % 700));
+        }
+        long listBytes = usedHeap() - base;
+
+        base = usedHeap();
+        RectangleStore store = new RectangleStore(n);
+        for (RectanglePrototype r : list) {
+            store.append(r);
+        }
+        long storeBytes = usedHeap() - base;
+
+        System.out.printf("List<RectanglePrototype>: %,d bytes (%.1f per rectangle)%n", listBytes, listBytes / (double) n);
+        System.out.printf("RectangleStore:           %,d bytes (%.1f per rectangle)%n", storeBytes, storeBytes / (double) n);
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long listChars = 0;
+            for (RectanglePrototype r : list) {
+                listChars += r.getDetails().length();
+            }
+            long listNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long storeChars = 0;
+            StringBuilder buffer = new StringBuilder(64);
+            for (int i = 0; i < store.size(); i++) {
+                buffer.setLength(0);
+                storeChars += store.formatDetails(i, buffer).length();
+            }
+            long storeNanos = System.nanoTime() - start;
+
+            if (listChars != storeChars) {
+                throw new IllegalStateException("outputs differ: " + listChars + " vs " + storeChars);
+            }
+            System.out.printf("round %d getDetails scan: list %.1f ns/item, store %.1f ns/item%n",
+                    round, listNanos / (double) n, storeNanos / (double) n);
+        }
+
+        long start = System.nanoTime();
+        store.appendClone(0, n);
+        System.out.printf("appendClone of %,d rows: %.2f ms%n", n, (System.nanoTime() - start) / 1e6);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
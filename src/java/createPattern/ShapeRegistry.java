@@ -0,0 +1,253 @@
+package src.java.createPattern;
+
+/*
+基于注册表的简单工厂：替换 SimpleFactory 中逐个 equals 比较的 if-else 链。
+
+原来每新增一种产品都要修改工厂方法，查找代价也随产品数量线性增长。
+ShapeRegistry 中产品在启动时通过构造方法引用注册：
+注册完成后调用 freeze()，为所有名字计算一个完美哈希，每个名字落在主表中各自的槽位上，
+查找时只需要一次哈希（String 的 hashCode 本身有缓存）、两次数组访问和一次 equals，与产品数量无关。
+未注册的名字直接抛出 IllegalArgumentException，不会像原来一样返回 null。
+register(name, type, constructor) 按产品类上声明的 @ProductPolicy 包装构造方法（例如 SHARED 的产品只创建一次），
+和 CircleFactory 等工厂的行为一致；只传构造方法的 register 原样使用它，每次 create 都会调用一次。
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class ShapeRegistry {
+    private final Map<String, Supplier<? extends Shape>> pending = new LinkedHashMap<>();
+    private volatile Table table;
+
+    public ShapeRegistry register(String name, Supplier<? extends Shape> constructor) {
+        if (table != null) {
+            throw new IllegalStateException("Registry is frozen");
+        }
+        if (pending.putIfAbsent(name, constructor) != null) {
+            throw new IllegalArgumentException("Duplicate product: " + name);
+        }
+        return this;
+    }
+
+    // 按 type 上声明的实例策略注册，没有声明时每次 create 都新建
+    public <T extends Shape> ShapeRegistry register(String name, Class<T> type, Supplier<T> constructor) {
+        return register(name, InstancePolicy.of(type).supplier(constructor));
+    }
+
+    // 注册结束，生成完美哈希表，之后不能再注册
+    public ShapeRegistry freeze() {
+        if (table == null) {
+            table = Table.build(pending);
+        }
+        return this;
+    }
+
+    public Shape create(String name) {
+        return constructor(name).get();
+    }
+
+    public Supplier<? extends Shape> constructor(String name) {
+        Table t = table;
+        if (t == null) {
+            throw new IllegalStateException("Registry is not frozen");
+        }
+        Supplier<? extends Shape> constructor = t.find(name);
+        if (constructor == null) {
+            throw new IllegalArgumentException("Unknown product: " + name);
+        }
+        return constructor;
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /*
+    冻结后的查找表，采用两级的“哈希加位移”（hash and displace）完美哈希：
+    第一级把名字分到若干个桶里，第二级为每个桶找一个位移值，使桶内所有名字落到主表中互不冲突的空槽上。
+    查找时读一次位移数组、一次主表，不需要探测。
+    hashCode 完全相同的名字无法区分，只有第一个进入主表，其余的放在一个很小的溢出表里。
+     */
+    private static final class Table {
+        private static final int MAX_DISPLACEMENT = 1 << 16;
+
+        private final String[] keys;
+        private final Supplier<? extends Shape>[] constructors;
+        private final int[] displacements;
+        private final int mask;
+        private final int bucketMask;
+        private final Map<String, Supplier<? extends Shape>> overflow = new LinkedHashMap<>();
+
+        // 泛型数组只能先创建原始类型的数组；元素只通过 fill 写入，类型都是 Supplier<? extends Shape>
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Table(int size, int buckets) {
+            keys = new String[size];
+            constructors = new Supplier[size];
+            displacements = new int[buckets];
+            mask = size - 1;
+            bucketMask = buckets - 1;
+        }
+
+        Supplier<? extends Shape> find(String name) {
+            int h = name.hashCode();
+            int slot = slot(h, displacements[bucket(h)]);
+            String key = keys[slot];
+            if (key == name || (key != null && key.equals(name))) {
+                return constructors[slot];
+            }
+            return overflow.isEmpty() ? null : overflow.get(name);
+        }
+
+        private int bucket(int h) {
+            int x = h * 0x85EBCA6B;
+            return (x ^ (x >>> 16)) & bucketMask;
+        }
+
+        private int slot(int h, int displacement) {
+            int x = (h ^ displacement) * 0x9E3779B1;
+            return (x ^ (x >>> 15)) & mask;
+        }
+
+        static Table build(Map<String, Supplier<? extends Shape>> entries) {
+            // 主表装载率不超过 1/2，平均每个桶 2 个名字
+            int size = tableSize(entries.size() * 2);
+            int buckets = tableSize((entries.size() + 1) / 2);
+            while (true) {
+                Table t = new Table(size, buckets);
+                if (t.fill(entries)) {
+                    return t;
+                }
+                size <<= 1;
+            }
+        }
+
+        private static int tableSize(int n) {
+            return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+        }
+
+        private boolean fill(Map<String, Supplier<? extends Shape>> entries) {
+            // 按桶分组，hashCode 重复的名字放入溢出表
+            Map<Integer, String> byHash = new HashMap<>();
+            List<List<String>> groups = new ArrayList<>();
+            for (int i = 0; i <= bucketMask; i++) {
+                groups.add(new ArrayList<>());
+            }
+            for (String key : entries.keySet()) {
+                if (byHash.putIfAbsent(key.hashCode(), key) != null) {
+                    overflow.put(key, entries.get(key));
+                } else {
+                    groups.get(bucket(key.hashCode())).add(key);
+                }
+            }
+            // 先处理大桶，它们最难找到合适的位移
+            Integer[] order = new Integer[groups.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> groups.get(b).size() - groups.get(a).size());
+
+            boolean[] used = new boolean[keys.length];
+            int[] slots = new int[keys.length];
+            for (int b : order) {
+                List<String> group = groups.get(b);
+                if (group.isEmpty()) {
+                    break;
+                }
+                int displacement = 0;
+                while (!tryPlace(group, displacement, used, slots)) {
+                    if (++displacement == MAX_DISPLACEMENT) {
+                        return false;
+                    }
+                }
+                displacements[b] = displacement;
+                for (int i = 0; i < group.size(); i++) {
+                    String key = group.get(i);
+                    keys[slots[i]] = key;
+                    constructors[slots[i]] = entries.get(key);
+                }
+            }
+            return true;
+        }
+
+        private boolean tryPlace(List<String> group, int displacement, boolean[] used, int[] slots) {
+            for (int i = 0; i < group.size(); i++) {
+                int slot = slot(group.get(i).hashCode(), displacement);
+                if (used[slot]) {
+                    for (int j = 0; j < i; j++) {
+                        used[slots[j]] = false;
+                    }
+                    return false;
+                }
+                used[slot] = true;
+                slots[i] = slot;
+            }
+            return true;
+        }
+    }
+}
+
+/*
+查找代价对比：原来的 equals 链（按顺序逐个比较）与 ShapeRegistry，产品数量分别为 5、50、500。
+查找用的名字是新建的字符串对象，和注册时的不是同一个引用，与读取输入时的情况一致。
+用法：java src.java.createPattern.ShapeRegistryBenchmark [查找次数]
+ */
+class ShapeRegistryBenchmark {
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Shape shared = new Circle();
+        System.out.printf("%8s %14s %14s%n", "products", "chain(ns)", "registry(ns)");
+        for (int n : new int[]{5, 50, 500}) {
+            String[] names = new String[n];
+            ShapeRegistry registry = new ShapeRegistry();
+            for (int i = 0; i < n; i++) {
+                names[i] = "shape-" + i;
+                registry.register(names[i], () -> shared);
+            }
+            registry.freeze();
+
+            Random random = new Random(7);
+            String[] queries = new String[4096];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = new String(names[random.nextInt(n)]);
+            }
+
+            double chainNs = 0;
+            double registryNs = 0;
+            for (int round = 0; round < 3; round++) {
+                chainNs = time(lookups, queries, q -> chainLookup(names, q, shared));
+                registryNs = time(lookups, queries, registry::create);
+            }
+            System.out.printf("%8d %14.2f %14.2f%n", n, chainNs, registryNs);
+        }
+    }
+
+    // 和 SimpleFactory 原来的写法等价：按顺序逐个 equals，找不到返回 null
+    private static Shape chainLookup(String[] names, String query, Shape shared) {
+        for (String name : names) {
+            if (query.equals(name)) {
+                return shared;
+            }
+        }
+        return null;
+    }
+
+    private static double time(int lookups, String[] queries, Function<String, Shape> lookup) {
+        long start = System.nanoTime();
+        Shape last = null;
+        for (int i = 0; i < lookups; i++) {
+            last = lookup.apply(queries[i & (queries.length - 1)]);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = last;
+        return elapsed / (double) lookups;
+    }
+}
@@ -22,6 +22,8 @@ package src.java.createPattern;
 只有一个实例:当系统中某个类只需要一个实例来协调行为的时候，可以考虑使用单例模式， 比如说管理应用程序中的缓存，确保只有一个缓存实例，
     避免重复的缓存创建和管理，或者使用单例模式来创建和管理线程池。
 懒加载:如果对象创建本身就比较消耗资源，而且可能在整个程序中都不一定会使用，可以使用单例模式实现懒加载。
+
+静态内部类和枚举这两种实现分别在 HolderSingleton、EnumSingleton 同名的文件中。
 */
 
 // 饿汉模式：实例在类加载时就被创建, 这种方式的实现相对简单，但是实例有可能没有使用而造成资源浪费。
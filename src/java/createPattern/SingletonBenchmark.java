@@ -0,0 +1,200 @@
+package src.java.createPattern;
+
+/*
+单例访问方式的性能对比：饿汉、synchronized 懒汉、双重检查锁定、静态内部类、枚举。
+
+分两部分测量：
+冷启动：每种实现第一次调用 getInstance 的耗时（包含类加载和初始化），必须在同一个 JVM 中最先执行，否则类已经初始化过了。
+竞争访问：1 到 64 个线程同时调用 getInstance，统计吞吐量和 p99 延迟。
+    单次调用只有几纳秒，低于 System.nanoTime 的精度，所以延迟按 BATCH 次调用为一组计时，再折算成每次调用的耗时。
+    每种实现的 BATCH 次调用写在各自的循环里（Variant 的每个实现各有一份），循环中是对 getInstance 的直接调用，可以被内联；
+    如果所有实现共用一个 supplier.get() 调用点，这个调用点会变成 megamorphic，每种实现都要付出同样的虚调用开销，
+    静态内部类、枚举和其他实现之间的差别就看不出来了。
+
+用法：java src.java.createPattern.SingletonBenchmark [每轮毫秒数] [线程数列表，如 1,2,4,8]
+ */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class SingletonBenchmark {
+    private static final int BATCH = 64;
+    private static final int MAX_SAMPLES = 1 << 16;
+
+    // 防止 JIT 把调用结果当作死代码消除
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        long durationMs = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int[] threadCounts = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 2, 4, 8, 16, 32, 64};
+
+        Map<String, Variant> variants = new LinkedHashMap<>();
+        variants.put("Hungry", n -> {
+            Object last = null;
+            for (int i = 0; i < n; i++) {
+                last = HungrySingleton.getInstance();
+            }
+            return last;
+        });
+        variants.put("Lazy(synchronized)", n -> {
+            Object last = null;
+            for (int i = 0; i < n; i++) {
+                last = LazySingleton.getInstance();
+            }
+            return last;
+        });
+        variants.put("DoubleChecked", n -> {
+            Object last = null;
+            for (int i = 0; i < n; i++) {
+                last = Singleton.getInstance();
+            }
+            return last;
+        });
+        variants.put("Holder", n -> {
+            Object last = null;
+            for (int i = 0; i < n; i++) {
+                last = HolderSingleton.getInstance();
+            }
+            return last;
+        });
+        variants.put("Enum", n -> {
+            Object last = null;
+            for (int i = 0; i < n; i++) {
+                last = EnumSingleton.getInstance();
+            }
+            return last;
+        });
+
+        // 1. 冷启动
+        System.out.println("== first access ==");
+        for (Map.Entry<String, Variant> e : variants.entrySet()) {
+            long start = System.nanoTime();
+            sink = e.getValue().getInstance(1);
+            long cost = System.nanoTime() - start;
+            System.out.printf("%-20s %10d ns%n", e.getKey(), cost);
+        }
+
+        // 2. 预热，让 JIT 完成编译
+        for (Variant v : variants.values()) {
+            run(v, 1, Math.min(durationMs, 200));
+        }
+
+        // 3. 竞争访问
+        System.out.println("== contended getInstance ==");
+        System.out.printf("%-20s %8s %16s %12s %12s%n", "variant", "threads", "ops/s", "p50(ns)", "p99(ns)");
+        for (Map.Entry<String, Variant> e : variants.entrySet()) {
+            for (int threads : threadCounts) {
+                Result r = run(e.getValue(), threads, durationMs);
+                System.out.printf("%-20s %8d %16.0f %12.2f %12.2f%n",
+                        e.getKey(), threads, r.opsPerSecond, r.p50, r.p99);
+            }
+        }
+    }
+
+    private static Result run(Variant variant, int threads, long durationMs) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        Worker[] workers = new Worker[threads];
+        Thread[] pool = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(variant, ready, go);
+            pool[i] = new Thread(workers[i], "singleton-bench-" + i);
+            pool[i].start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(durationMs);
+        for (Worker w : workers) {
+            w.running = false;
+        }
+        for (Thread t : pool) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long ops = 0;
+        int sampleCount = 0;
+        for (Worker w : workers) {
+            ops += w.ops;
+            sampleCount += w.sampleCount;
+        }
+        long[] samples = new long[sampleCount];
+        int offset = 0;
+        for (Worker w : workers) {
+            System.arraycopy(w.samples, 0, samples, offset, w.sampleCount);
+            offset += w.sampleCount;
+        }
+        Arrays.sort(samples);
+
+        Result r = new Result();
+        r.opsPerSecond = ops * 1e9 / elapsed;
+        r.p50 = percentile(samples, 0.50) / (double) BATCH;
+        r.p99 = percentile(samples, 0.99) / (double) BATCH;
+        return r;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    // 连续调用 n 次 getInstance，返回最后一次的结果
+    private interface Variant {
+        Object getInstance(int n);
+    }
+
+    private static class Result {
+        double opsPerSecond;
+        double p50;
+        double p99;
+    }
+
+    private static class Worker implements Runnable {
+        private final Variant variant;
+        private final CountDownLatch ready;
+        private final CountDownLatch go;
+        private final long[] samples = new long[MAX_SAMPLES];
+        private int sampleCount;
+        private long ops;
+        private volatile boolean running = true;
+
+        Worker(Variant variant, CountDownLatch ready, CountDownLatch go) {
+            this.variant = variant;
+            this.ready = ready;
+            this.go = go;
+        }
+
+        @Override
+        public void run() {
+            ready.countDown();
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Object last = null;
+            long count = 0;
+            int n = 0;
+            while (running) {
+                long start = System.nanoTime();
+                last = variant.getInstance(BATCH);
+                long cost = System.nanoTime() - start;
+                // 样本数组写满后按环形覆盖，保留最近的样本
+                samples[n++ & (MAX_SAMPLES - 1)] = cost;
+                count += BATCH;
+            }
+            sampleCount = Math.min(n, MAX_SAMPLES);
+            ops = count;
+            sink = last;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package src.java.createPattern;
+
+/*
+单例注册表：把 LazySingleton / Singleton 中每个类各写一遍的懒加载逻辑统一起来，按类型管理多个共享组件（连接池、缓存、配置等）。
+
+getOrCreate(Class<T>, Supplier<T>)：
+读路径无锁：实例创建完成后，只有一次 ConcurrentHashMap.get 和一次 volatile 读，不会像 LazySingleton 那样每次都竞争类锁。
+只构造一次：每个类型对应一个 Holder，只在 Holder 上加锁做双重检查，多个线程同时首次访问时只有一个线程执行 Supplier。
+    锁的粒度是单个类型，不同组件的初始化互不阻塞，Supplier 内部也可以再去获取其他组件。
+初始化耗时：记录每个类型 Supplier 的执行时间，方便查看启动成本。
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class SingletonRegistry {
+    private static final SingletonRegistry GLOBAL = new SingletonRegistry();
+
+    private final ConcurrentHashMap<Class<?>, Holder> holders = new ConcurrentHashMap<>();
+
+    // 全局共享的注册表，也可以 new 一个独立的注册表（比如测试时）
+    public static SingletonRegistry getInstance() {
+        return GLOBAL;
+    }
+
+    public <T> T getOrCreate(Class<T> type, Supplier<? extends T> supplier) {
+        Holder holder = holders.get(type);
+        if (holder == null) {
+            holder = holders.computeIfAbsent(type, k -> new Holder());
+        }
+        Object value = holder.value;
+        if (value == null) {
+            value = holder.create(type, supplier);
+        }
+        return type.cast(value);
+    }
+
+    // 只查询不创建，未创建时返回 null
+    public <T> T getIfPresent(Class<T> type) {
+        Holder holder = holders.get(type);
+        return holder == null ? null : type.cast(holder.value);
+    }
+
+    // 每个已创建组件的初始化耗时（纳秒），按创建顺序排列
+    public Map<Class<?>, Long> initTimes() {
+        Map<Class<?>, Long> times = new LinkedHashMap<>();
+        holders.entrySet().stream()
+                .filter(e -> e.getValue().value != null)
+                .sorted((a, b) -> Long.compare(a.getValue().createdAt, b.getValue().createdAt))
+                .forEach(e -> times.put(e.getKey(), e.getValue().initNanos));
+        return Collections.unmodifiableMap(times);
+    }
+
+    private static class Holder {
+        private volatile Object value;
+        private long initNanos;
+        private long createdAt;
+
+        synchronized Object create(Class<?> type, Supplier<?> supplier) {
+            Object v = value;
+            if (v == null) {
+                long start = System.nanoTime();
+                // Supplier 抛出异常时 value 仍为 null，下一个调用者会重试
+                v = supplier.get();
+                if (v == null) {
+                    throw new NullPointerException("Supplier returned null for " + type.getName());
+                }
+                if (!type.isInstance(v)) {
+                    throw new ClassCastException(v.getClass().getName() + " is not a " + type.getName());
+                }
+                createdAt = System.nanoTime();
+                initNanos = createdAt - start;
+                // 先写耗时再发布 value，读到 value 的线程一定能看到耗时
+                value = v;
+            }
+            return v;
+        }
+    }
+}
+
+// 一个构造代价较高的共享组件
+class ExpensiveCache {
+    static final AtomicInteger CONSTRUCTIONS = new AtomicInteger();
+
+    ExpensiveCache() {
+        CONSTRUCTIONS.incrementAndGet();
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// 客户端代码
+class SingletonRegistryExample {
+    public static void main(String[] args) throws InterruptedException {
+        SingletonRegistry registry = SingletonRegistry.getInstance();
+
+        // 多个线程同时首次访问，ExpensiveCache 只会被构造一次
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> registry.getOrCreate(ExpensiveCache.class, ExpensiveCache::new));
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        registry.getOrCreate(StringBuilder.class, StringBuilder::new);
+
+        System.out.println("ExpensiveCache constructions: " + ExpensiveCache.CONSTRUCTIONS.get());
+        for (Map.Entry<Class<?>, Long> e : registry.initTimes().entrySet()) {
+            System.out.println(e.getKey().getSimpleName() + " init " + e.getValue() / 1000 + " us");
+        }
+    }
+}
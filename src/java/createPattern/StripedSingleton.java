@@ -0,0 +1,263 @@
+package src.java.createPattern;
+
+/*
+分片单例（Striped Singleton）：逻辑上仍然只有一个全局实例，但内部拆成多个分片，每个线程固定落在其中一个分片上。
+
+当单例中保存的是可变状态（计数器、缓冲区）时，所有线程都写同一个对象，会在同一条缓存行上反复竞争。
+分片之后写操作只修改本线程所在的分片，读操作再把所有分片汇总起来，思路和 LongAdder 一样：
+写多读少的场景下用读的代价换取写的可扩展性。
+
+分片数取不小于 CPU 核数的 2 的幂，线程按首次访问的顺序轮流分配分片，分配结果保存在 ThreadLocal 中。
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+public class StripedSingleton<S> {
+    private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+    private static final ThreadLocal<Integer> THREAD_STRIPE =
+            ThreadLocal.withInitial(NEXT_STRIPE::getAndIncrement);
+
+    private final Object[] shards;
+    private final int mask;
+
+    public StripedSingleton(Supplier<? extends S> shardFactory) {
+        this(Runtime.getRuntime().availableProcessors(), shardFactory);
+    }
+
+    public StripedSingleton(int minStripes, Supplier<? extends S> shardFactory) {
+        int n = 1;
+        while (n < minStripes) {
+            n <<= 1;
+        }
+        shards = new Object[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = shardFactory.get();
+        }
+        mask = n - 1;
+    }
+
+    // 当前线程对应的分片，写操作只应作用在这个分片上
+    @SuppressWarnings("unchecked")
+    public S local() {
+        return (S) shards[THREAD_STRIPE.get() & mask];
+    }
+
+    // 汇总所有分片
+    @SuppressWarnings("unchecked")
+    public <R> R aggregate(R identity, BiFunction<R, ? super S, R> accumulator) {
+        R result = identity;
+        for (Object shard : shards) {
+            result = accumulator.apply(result, (S) shard);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<S> shards() {
+        List<S> list = new ArrayList<>(shards.length);
+        for (Object shard : shards) {
+            list.add((S) shard);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    public int stripes() {
+        return shards.length;
+    }
+}
+
+// 计数分片的前置填充。HotSpot 会重排同一个类中的字段（long 字段会被挤在一起），
+// 但父类的字段总是排在子类字段之前，所以填充要通过继承层次分成前、中、后三段才能真正把 value 隔开
+abstract class CounterCellPadBefore {
+    long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class CounterCellValue extends CounterCellPadBefore {
+    volatile long value;
+}
+
+// 计数分片：value 前后各有 56 字节填充，避免相邻分片落在同一条缓存行上（伪共享）。
+// value 直接放在分片对象里，通过 VarHandle 原子更新，不再经过一个单独分配、位置不受控制的 AtomicLong
+class CounterCell extends CounterCellValue {
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(CounterCellValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    long p11, p12, p13, p14, p15, p16, p17;
+
+    void add(long x) {
+        VALUE.getAndAdd(this, x);
+    }
+
+    long get() {
+        return value;
+    }
+
+    void reset() {
+        value = 0;
+    }
+}
+
+// 基于分片单例的全局计数器
+class StripedCounter {
+    private static volatile StripedCounter instance;
+
+    private final StripedSingleton<CounterCell> cells = new StripedSingleton<>(CounterCell::new);
+
+    private StripedCounter() {
+        // 私有构造方法，防止外部实例化
+    }
+
+    public static StripedCounter getInstance() {
+        if (instance == null) {
+            synchronized (StripedCounter.class) {
+                if (instance == null) {
+                    instance = new StripedCounter();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void increment() {
+        cells.local().add(1);
+    }
+
+    public void add(long x) {
+        cells.local().add(x);
+    }
+
+    public long sum() {
+        return cells.aggregate(0L, (acc, cell) -> acc + cell.get());
+    }
+
+    public void reset() {
+        for (CounterCell cell : cells.shards()) {
+            cell.reset();
+        }
+    }
+}
+
+// 对照组：和 Singleton 相同的双重检查锁定，内部只持有一个 AtomicLong
+class AtomicCounterSingleton {
+    private static volatile AtomicCounterSingleton instance;
+
+    private final AtomicLong value = new AtomicLong();
+
+    private AtomicCounterSingleton() {
+        // 私有构造方法，防止外部实例化
+    }
+
+    public static AtomicCounterSingleton getInstance() {
+        if (instance == null) {
+            synchronized (AtomicCounterSingleton.class) {
+                if (instance == null) {
+                    instance = new AtomicCounterSingleton();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public long sum() {
+        return value.get();
+    }
+
+    public void reset() {
+        value.set(0);
+    }
+}
+
+/*
+对比双重检查单例 + AtomicLong 与分片单例的写入吞吐量，每轮结束后校验计数总和没有丢失。
+用法：java src.java.createPattern.StripedSingletonBenchmark [每轮毫秒数] [线程数列表]
+ */
+class StripedSingletonBenchmark {
+    private static volatile boolean running;
+
+    public static void main(String[] args) throws InterruptedException {
+        long durationMs = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        String[] list = (args.length > 1 ? args[1] : "1,2,4,8,16,32,64").split(",");
+
+        // 预热
+        run(() -> AtomicCounterSingleton.getInstance().increment(), 4, 200);
+        run(() -> StripedCounter.getInstance().increment(), 4, 200);
+
+        System.out.printf("%-12s %8s %16s %8s%n", "variant", "threads", "ops/s", "speedup");
+        for (String s : list) {
+            int threads = Integer.parseInt(s.trim());
+
+            AtomicCounterSingleton.getInstance().reset();
+            long[] atomic = run(() -> AtomicCounterSingleton.getInstance().increment(), threads, durationMs);
+            verify(AtomicCounterSingleton.getInstance().sum(), atomic[0]);
+
+            StripedCounter.getInstance().reset();
+            long[] striped = run(() -> StripedCounter.getInstance().increment(), threads, durationMs);
+            verify(StripedCounter.getInstance().sum(), striped[0]);
+
+            double atomicOps = atomic[0] * 1e9 / atomic[1];
+            double stripedOps = striped[0] * 1e9 / striped[1];
+            System.out.printf("%-12s %8d %16.0f%n", "AtomicLong", threads, atomicOps);
+            System.out.printf("%-12s %8d %16.0f %7.2fx%n", "Striped", threads, stripedOps, stripedOps / atomicOps);
+        }
+    }
+
+    private static void verify(long sum, long expected) {
+        if (sum != expected) {
+            throw new IllegalStateException("expected " + expected + " increments but counted " + sum);
+        }
+    }
+
+    // 返回 {总操作数, 耗时纳秒}
+    private static long[] run(Runnable op, int threads, long durationMs) throws InterruptedException {
+        long[] counts = new long[threads];
+        Thread[] pool = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            pool[i] = new Thread(() -> {
+                long n = 0;
+                while (running) {
+                    for (int k = 0; k < 1024; k++) {
+                        op.run();
+                    }
+                    n += 1024;
+                }
+                counts[id] = n;
+            });
+        }
+        running = true;
+        long start = System.nanoTime();
+        for (Thread t : pool) {
+            t.start();
+        }
+        Thread.sleep(durationMs);
+        running = false;
+        for (Thread t : pool) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        return new long[]{total, elapsed};
+    }
+}
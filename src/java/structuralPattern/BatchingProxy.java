@@ -0,0 +1,280 @@
+package src.java.structuralPattern;
+
+/*
+合并请求的批处理代理。
+
+Proxy.request() 每次调用都单独转发给真实主题；当真实主题是一个慢速的后端（每次往返几毫秒，而且同一时间只能处理一个请求）时，
+N 个调用方就要排队付出 N 次往返的时间。
+BatchingProxy 把一段时间窗口内到达的调用（或者达到批大小上限时）收集起来，对真实主题发起一次批量调用，
+再把结果逐个交还给每个调用方的 CompletableFuture：
+调用方：submit 把请求放入队列并立即返回 future；request 是同步版本，等待 future 完成。
+分发线程：阻塞等待第一个请求，然后在窗口时间内继续收集，直到窗口结束或者凑满 maxBatchSize，调用 BatchBackend.handleAll。
+    后端忙的时候新来的请求在队列中累积，下一批自然就更大，负载越高合并得越多。
+批量调用抛出异常（包括 Error）或返回的结果数量不对时，这一批的所有调用方都收到异常，分发线程继续处理下一批。
+统计：每批的大小和每个请求在队列中等待的时间（微秒）分别记录在 Histogram 中。
+ */
+
+import src.java.util.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+public class BatchingProxy<Q, R> implements AutoCloseable {
+    private final BatchBackend<Q, R> backend;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending<Q, R>> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram queueWaitMicros = new Histogram();
+    private volatile boolean closed;
+
+    public BatchingProxy(BatchBackend<Q, R> backend, long window, TimeUnit unit, int maxBatchSize) {
+        if (window < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("window must not be negative and maxBatchSize must be positive");
+        }
+        this.backend = backend;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = new Thread(this::dispatch, "batching-proxy");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<R> submit(Q request) {
+        Pending<Q, R> pending = new Pending<>(request);
+        if (closed) {
+            pending.result.completeExceptionally(new IllegalStateException("BatchingProxy is closed"));
+            return pending.result;
+        }
+        queue.add(pending);
+        // close 可能发生在上面的检查之后、入队之前，此时 close 已经清空过队列，这里自己撤回
+        if (closed && queue.remove(pending)) {
+            pending.result.completeExceptionally(new IllegalStateException("BatchingProxy is closed"));
+        }
+        return pending.result;
+    }
+
+    // 同步调用：等待所在批次完成，批量调用的异常原样抛出
+    public R request(Q request) {
+        try {
+            return submit(request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public Histogram batchSizes() {
+        return batchSizes;
+    }
+
+    public Histogram queueWaitMicros() {
+        return queueWaitMicros;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending<Q, R> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("BatchingProxy is closed"));
+        }
+    }
+
+    private void dispatch() {
+        List<Pending<Q, R>> batch = new ArrayList<>(maxBatchSize);
+        List<Q> requests = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    // 先把已经到达的请求一次取走，不够再在剩余的窗口时间内等待
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending<Q, R> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch, requests);
+            }
+        } catch (InterruptedException e) {
+            // close
+        }
+        for (Pending<Q, R> pending : batch) {
+            pending.result.completeExceptionally(new IllegalStateException("BatchingProxy is closed"));
+        }
+    }
+
+    private void flush(List<Pending<Q, R>> batch, List<Q> requests) {
+        long now = System.nanoTime();
+        for (Pending<Q, R> pending : batch) {
+            requests.add(pending.request);
+            queueWaitMicros.record((now - pending.enqueuedAt) / 1000);
+        }
+        batchSizes.record(batch.size());
+        try {
+            List<R> results = backend.handleAll(requests);
+            if (results == null || results.size() != batch.size()) {
+                throw new IllegalStateException("Backend returned " + (results == null ? "null" : results.size())
+                        + " results for a batch of " + batch.size());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            // 包括 Error（例如后端抛出的 OutOfMemoryError、StackOverflowError）：只让这一批失败，分发线程继续处理后面的请求
+            for (Pending<Q, R> pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+        } finally {
+            batch.clear();
+            requests.clear();
+        }
+    }
+
+    private static final class Pending<Q, R> {
+        private final Q request;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        Pending(Q request) {
+            this.request = request;
+        }
+    }
+}
+
+// 支持批量调用的真实主题：返回的结果与请求一一对应，顺序相同
+interface BatchBackend<Q, R> {
+    List<R> handleAll(List<Q> requests);
+}
+
+// 本地模拟的慢速后端：只有一个连接（同一时间只处理一个调用），每次往返固定延迟，批量调用也只算一次往返
+class SlowBackend implements BatchBackend<Integer, String> {
+    private final long latencyNanos;
+    final LongAdder roundTrips = new LongAdder();
+
+    SlowBackend(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    public synchronized String lookup(Integer id) {
+        roundTrip();
+        return "value-" + id;
+    }
+
+    @Override
+    public synchronized List<String> handleAll(List<Integer> ids) {
+        roundTrip();
+        List<String> results = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            results.add("value-" + id);
+        }
+        return results;
+    }
+
+    private void roundTrip() {
+        roundTrips.increment();
+        // sleep 的精度不够，剩余的部分自旋等待
+        long deadline = System.nanoTime() + latencyNanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 200_000) {
+                try {
+                    Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000 / 2));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
+
+/*
+1000 个并发调用方，后端每次往返 2ms：
+逐个转发：每个调用都是一次往返，调用方在后端的唯一连接上排队。
+批处理代理：窗口 1ms，每批最多 1000 个。
+输出吞吐量、调用方看到的延迟，以及批大小和队列等待时间的分布。
+用法：java src.java.structuralPattern.BatchingProxyBenchmark [调用方数] [每个调用方的调用次数]
+ */
+class BatchingProxyBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int callers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int callsPerCaller = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SlowBackend direct = new SlowBackend(2, TimeUnit.MILLISECONDS);
+        Histogram directLatency = new Histogram();
+        long elapsed = run(callers, callsPerCaller, id -> direct.lookup(id), directLatency);
+        report("direct", callers * callsPerCaller, elapsed, direct.roundTrips.sum(), directLatency);
+
+        SlowBackend batched = new SlowBackend(2, TimeUnit.MILLISECONDS);
+        Histogram batchedLatency = new Histogram();
+        try (BatchingProxy<Integer, String> proxy = new BatchingProxy<>(batched, 1, TimeUnit.MILLISECONDS, 1000)) {
+            elapsed = run(callers, callsPerCaller, proxy::request, batchedLatency);
+            report("batching proxy", callers * callsPerCaller, elapsed, batched.roundTrips.sum(), batchedLatency);
+            System.out.println("  batch size:       " + proxy.batchSizes().summary(""));
+            System.out.println("  queue wait:       " + proxy.queueWaitMicros().summary("us"));
+        }
+    }
+
+    private static void report(String name, long calls, long elapsedNanos, long roundTrips, Histogram latency) {
+        System.out.printf("%-16s %10.0f calls/s, %6d round trips%n", name, calls * 1e9 / elapsedNanos, roundTrips);
+        System.out.println("  caller latency:   " + latency.summary("us"));
+    }
+
+    private static long run(int callers, int callsPerCaller, IntFunction<String> call,
+                            Histogram latency) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[callers];
+        for (int c = 0; c < callers; c++) {
+            final int caller = c;
+            threads[c] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < callsPerCaller; i++) {
+                    long t0 = System.nanoTime();
+                    call.apply(caller * callsPerCaller + i);
+                    latency.record((System.nanoTime() - t0) / 1000);
+                }
+            });
+            threads[c].start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.nanoTime() - t0;
+    }
+}
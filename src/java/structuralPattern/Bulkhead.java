@@ -0,0 +1,53 @@
+package src.java.structuralPattern;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 舱壁：最多 maxConcurrent 个调用同时执行，最多 maxWaiting 个调用等待，每个最多等待 maxWait
+public class Bulkhead {
+    private final Semaphore permits;
+    private final int maxWaiting;
+    private final long maxWaitNanos;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public Bulkhead(int maxConcurrent, int maxWaiting, long maxWait, TimeUnit unit) {
+        if (maxConcurrent < 1 || maxWaiting < 0 || maxWait < 0) {
+            throw new IllegalArgumentException("Invalid bulkhead limits");
+        }
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxWaiting = maxWaiting;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    // 成功进入返回 null，否则返回拒绝原因；等待时被中断返回 INTERRUPTED，并保留线程的中断标志
+    RejectedCallException.Reason enter() {
+        if (permits.tryAcquire()) {
+            return null;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return RejectedCallException.Reason.BULKHEAD_FULL;
+        }
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS) ? null : RejectedCallException.Reason.WAIT_TIMEOUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RejectedCallException.Reason.INTERRUPTED;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    void exit() {
+        permits.release();
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+}
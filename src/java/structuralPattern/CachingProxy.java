@@ -0,0 +1,378 @@
+package src.java.structuralPattern;
+
+/*
+通用的缓存代理：基于 JDK 动态代理（java.lang.reflect.Proxy），可以包装任意接口。
+
+Proxy.java 中的代理只能代理 Subject 的 request 一个方法，延迟创建真实主题时也没有同步，
+多个线程同时第一次访问会创建出多个 RealSubject。CachingProxy 在这两点之上再加入结果缓存：
+单次构造：真实主题在第一次调用任意方法时才创建，用 volatile 加双重检查保证只创建一次。
+结果缓存：接口上标注了 @Memoized 的方法被视为纯函数，按参数缓存返回值，其余方法直接转发。
+    缓存有存活时间（TTL）和每个方法的条目数上限，超出上限时按插入顺序淘汰最早的条目。
+合并并发调用：相同方法、相同参数的调用如果已经有一个正在执行，后来的调用方等待它的结果，而不是再调用一次真实主题。
+    真实方法抛出异常时，结果不缓存，正在等待的调用方收到同一个异常。
+指标：每个方法分别统计命中、未命中、合并、过期和淘汰次数，计数器是 LongAdder。
+
+注解 Memoized 和示例用到的 PriceService、SlowPriceService 分别在同名的文件中。
+ */
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public final class CachingProxy<T> implements InvocationHandler {
+    private final Class<T> type;
+    private final Supplier<? extends T> realSubjectFactory;
+    private final long ttlNanos;
+    private final int maxEntriesPerMethod;
+    private final Map<Method, MethodCache> caches = new ConcurrentHashMap<>();
+    private volatile T realSubject;
+
+    private CachingProxy(Class<T> type, Supplier<? extends T> realSubjectFactory, long ttlNanos, int maxEntriesPerMethod) {
+        this.type = type;
+        this.realSubjectFactory = realSubjectFactory;
+        this.ttlNanos = ttlNanos;
+        this.maxEntriesPerMethod = maxEntriesPerMethod;
+        for (Method method : type.getMethods()) {
+            if (method.isAnnotationPresent(Memoized.class)) {
+                if (method.getReturnType() == void.class) {
+                    throw new IllegalArgumentException("@Memoized method must return a value: " + method);
+                }
+                caches.put(method, new MethodCache(method));
+            }
+        }
+    }
+
+    // ttl 为 0 表示永不过期
+    public static <T> T create(Class<T> type, Supplier<? extends T> realSubjectFactory,
+                               long ttl, TimeUnit unit, int maxEntriesPerMethod) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException(type.getName() + " is not an interface");
+        }
+        if (ttl < 0 || maxEntriesPerMethod < 1) {
+            throw new IllegalArgumentException("ttl must not be negative and maxEntriesPerMethod must be positive");
+        }
+        CachingProxy<T> handler = new CachingProxy<>(type, realSubjectFactory, unit.toNanos(ttl), maxEntriesPerMethod);
+        return type.cast(java.lang.reflect.Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    // 取得代理对象背后的 CachingProxy，用于读取指标
+    public static CachingProxy<?> of(Object proxy) {
+        if (java.lang.reflect.Proxy.isProxyClass(proxy.getClass())) {
+            InvocationHandler handler = java.lang.reflect.Proxy.getInvocationHandler(proxy);
+            if (handler instanceof CachingProxy) {
+                return (CachingProxy<?>) handler;
+            }
+        }
+        throw new IllegalArgumentException("Not a caching proxy: " + proxy);
+    }
+
+    // 每个 @Memoized 方法的指标快照，key 是方法名和参数类型
+    public Map<String, Stats> metrics() {
+        Map<String, Stats> result = new LinkedHashMap<>();
+        caches.values().stream()
+                .sorted((a, b) -> a.name.compareTo(b.name))
+                .forEach(cache -> result.put(cache.name, cache.stats()));
+        return result;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        MethodCache cache = caches.get(method);
+        if (cache == null) {
+            return invokeReal(method, args);
+        }
+        return cache.get(new ArgsKey(args));
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "CachingProxy[" + type.getName() + "]";
+        }
+    }
+
+    private T realSubject() {
+        T subject = realSubject;
+        if (subject == null) {
+            synchronized (this) {
+                subject = realSubject;
+                if (subject == null) {
+                    subject = realSubjectFactory.get();
+                    realSubject = subject;
+                }
+            }
+        }
+        return subject;
+    }
+
+    private Object invokeReal(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(realSubject(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 一个 @Memoized 方法的缓存
+    private final class MethodCache {
+        private final Method method;
+        private final String name;
+        private final ConcurrentHashMap<ArgsKey, Entry> entries = new ConcurrentHashMap<>();
+        // 已完成条目的插入顺序，用于超出上限时淘汰最早的条目；只在持有它的锁时访问。
+        // 条目从 entries 中移除（过期、淘汰）时也从这里移除，所以它不会比缓存本身更大
+        private final LinkedHashMap<ArgsKey, Entry> order = new LinkedHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder collapsed = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+        private final LongAdder evicted = new LongAdder();
+
+        MethodCache(Method method) {
+            this.method = method;
+            StringBuilder sb = new StringBuilder(method.getName()).append('(');
+            Class<?>[] params = method.getParameterTypes();
+            for (int i = 0; i < params.length; i++) {
+                sb.append(i == 0 ? "" : ", ").append(params[i].getSimpleName());
+            }
+            this.name = sb.append(')').toString();
+        }
+
+        Object get(ArgsKey key) throws Throwable {
+            while (true) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    if (entry.isExpired()) {
+                        if (entries.remove(key, entry)) {
+                            expired.increment();
+                            synchronized (order) {
+                                order.remove(key, entry);
+                            }
+                        }
+                        continue;
+                    }
+                    if (entry.result.isDone()) {
+                        hits.increment();
+                    } else {
+                        collapsed.increment();
+                    }
+                    return await(entry.result);
+                }
+                Entry created = new Entry(key);
+                if (entries.putIfAbsent(key, created) != null) {
+                    continue;
+                }
+                misses.increment();
+                return load(created);
+            }
+        }
+
+        private Object load(Entry entry) throws Throwable {
+            Object value;
+            try {
+                value = invokeReal(method, entry.key.args);
+            } catch (Throwable t) {
+                // 失败的结果不缓存，等待中的调用方收到同一个异常
+                entries.remove(entry.key, entry);
+                entry.result.completeExceptionally(t);
+                throw t;
+            }
+            entry.expiresAt = ttlNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + ttlNanos;
+            entry.result.complete(value);
+            synchronized (order) {
+                // 同一个 key 之前的条目已经不在 entries 中了，新条目排到最后
+                order.remove(entry.key);
+                order.put(entry.key, entry);
+                // 刚完成就已经过期并被其他线程移除时，那个线程可能先于这里清理了 order
+                if (entries.get(entry.key) != entry) {
+                    order.remove(entry.key, entry);
+                }
+                Iterator<Entry> oldest = order.values().iterator();
+                while (entries.size() > maxEntriesPerMethod && oldest.hasNext()) {
+                    Entry e = oldest.next();
+                    oldest.remove();
+                    if (entries.remove(e.key, e)) {
+                        evicted.increment();
+                    }
+                }
+            }
+            return value;
+        }
+
+        private Object await(CompletableFuture<Object> result) throws Throwable {
+            try {
+                return result.get();
+            } catch (ExecutionException | CompletionException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                // 接口方法没有声明 InterruptedException，直接抛出会变成 UndeclaredThrowableException
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + name, e);
+            }
+        }
+
+        Stats stats() {
+            return new Stats(hits.sum(), misses.sum(), collapsed.sum(), expired.sum(), evicted.sum(), entries.size());
+        }
+    }
+
+    private static final class Entry {
+        private final ArgsKey key;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        // 结果完成前为 Long.MAX_VALUE
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(ArgsKey key) {
+            this.key = key;
+        }
+
+        boolean isExpired() {
+            long deadline = expiresAt;
+            return deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+        }
+    }
+
+    // 参数列表作为缓存 key，数组参数按内容比较
+    private static final class ArgsKey {
+        private static final Object[] NO_ARGS = new Object[0];
+
+        private final Object[] args;
+        private final int hash;
+
+        // 数组参数（包括嵌套的数组）逐层复制：调用方在调用之后修改自己的数组，不会改变已经存入缓存的 key。
+        // 其他可变的参数对象无法通用地复制，@Memoized 方法的调用方不能在调用之后修改它们
+        ArgsKey(Object[] args) {
+            this.args = args == null ? NO_ARGS : (Object[]) copyArrays(args);
+            this.hash = Arrays.deepHashCode(this.args);
+        }
+
+        private static Object copyArrays(Object value) {
+            if (value instanceof Object[]) {
+                Object[] copy = ((Object[]) value).clone();
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = copyArrays(copy[i]);
+                }
+                return copy;
+            }
+            if (value != null && value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+                System.arraycopy(value, 0, copy, 0, length);
+                return copy;
+            }
+            return value;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArgsKey && hash == ((ArgsKey) o).hash && Arrays.deepEquals(args, ((ArgsKey) o).args);
+        }
+    }
+
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long collapsed;
+        private final long expired;
+        private final long evicted;
+        private final int size;
+
+        Stats(long hits, long misses, long collapsed, long expired, long evicted, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.collapsed = collapsed;
+            this.expired = expired;
+            this.evicted = evicted;
+            this.size = size;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        // 等待了正在执行的相同调用、没有再调用真实主题的次数
+        public long collapsed() {
+            return collapsed;
+        }
+
+        public long expired() {
+            return expired;
+        }
+
+        public long evicted() {
+            return evicted;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double hitRate() {
+            long total = hits + misses + collapsed;
+            return total == 0 ? 0 : (hits + collapsed) / (double) total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, collapsed=%d, expired=%d, evicted=%d, size=%d, hitRate=%.2f%%",
+                    hits, misses, collapsed, expired, evicted, size, hitRate() * 100);
+        }
+    }
+}
+
+// 客户端代码：8 个线程同时第一次访问，同时查询同一个 sku
+class CachingProxyExample {
+    public static void main(String[] args) throws InterruptedException {
+        PriceService prices = CachingProxy.create(PriceService.class, SlowPriceService::new,
+                200, TimeUnit.MILLISECONDS, 1000);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> prices.priceOf("sku-1"));
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        prices.priceOf("sku-1");
+        prices.priceOf("sku-2");
+        Thread.sleep(250);
+        prices.priceOf("sku-1");
+        prices.audit("done");
+
+        System.out.println("real subjects constructed: " + SlowPriceService.CONSTRUCTED.sum());
+        System.out.println("real priceOf calls: " + SlowPriceService.CALLS.sum());
+        CachingProxy.of(prices).metrics().forEach((method, stats) -> System.out.println(method + ": " + stats));
+
+        // 同样可以作为 Subject 的线程安全延迟加载代理使用
+        Subject subject = CachingProxy.create(Subject.class, RealSubject::new, 0, TimeUnit.SECONDS, 1);
+        subject.request();
+    }
+}
@@ -0,0 +1,243 @@
+package src.java.structuralPattern;
+
+/*
+装饰组合缓存：同样的“咖啡 + 调料”组合只构建一次。
+
+DecoratorExample 对每一行订单都 new 一杯 BlackCoffee / Latte，再 new 一个 MilkDecorator / SugarDecorator，
+而咖啡和调料的组合只有寥寥几种。装饰者本身没有可变的状态，同一个组合完全可以共享同一条装饰链。
+CoffeeCombinations 以（基础咖啡，按顺序排列的装饰者列表）为 key 规范化装饰链：
+咖啡和调料用小的整数编号注册，组合保存在一棵前缀树里，根节点是基础咖啡，每往下一层套上一个装饰者，
+查找时按编号逐层取数组元素，命中后不分配任何对象；第一次出现的组合在加锁后创建。
+注册表和前缀树的数组都在加锁后复制、修改再整体替换（写时复制），所以 hasBase / hasDecorator 和命中的 get 都不用加锁。
+得到的装饰链被多个订单共享，共享之后不能再修改链上任何一层的 coffee 字段（见 Decorator）。
+ */
+
+import src.java.util.FastReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+class CoffeeCombinations {
+    private static final int MAX_CODE = 255;
+
+    private volatile Supplier<? extends Coffee>[] bases = newSupplierArray(0);
+    private volatile UnaryOperator<Coffee>[] decorators = newOperatorArray(0);
+    private volatile Node[] roots = new Node[0];
+    private int size;
+
+    public synchronized CoffeeCombinations registerBase(int code, Supplier<? extends Coffee> base) {
+        checkCode(code);
+        if (code < bases.length && bases[code] != null) {
+            throw new IllegalArgumentException("Duplicate coffee type: " + code);
+        }
+        Supplier<? extends Coffee>[] b = Arrays.copyOf(bases, Math.max(bases.length, code + 1));
+        b[code] = base;
+        if (code >= roots.length) {
+            roots = Arrays.copyOf(roots, code + 1);
+        }
+        bases = b;
+        return this;
+    }
+
+    // decorator 接收内层的咖啡，返回套上一层装饰后的咖啡
+    public synchronized CoffeeCombinations registerDecorator(int code, UnaryOperator<Coffee> decorator) {
+        checkCode(code);
+        if (code < decorators.length && decorators[code] != null) {
+            throw new IllegalArgumentException("Duplicate condiment type: " + code);
+        }
+        UnaryOperator<Coffee>[] d = Arrays.copyOf(decorators, Math.max(decorators.length, code + 1));
+        d[code] = decorator;
+        decorators = d;
+        return this;
+    }
+
+    public boolean hasBase(int code) {
+        Supplier<? extends Coffee>[] b = bases;
+        return code >= 0 && code < b.length && b[code] != null;
+    }
+
+    public boolean hasDecorator(int code) {
+        UnaryOperator<Coffee>[] d = decorators;
+        return code >= 0 && code < d.length && d[code] != null;
+    }
+
+    // 已经构建过的组合数量（包括不带装饰的基础咖啡）
+    public synchronized int size() {
+        return size;
+    }
+
+    public Coffee get(int base) {
+        return root(base).coffee;
+    }
+
+    // 最常见的情况：一种咖啡加一种调料，不经过可变参数数组
+    public Coffee get(int base, int decorator) {
+        return child(root(base), decorator).coffee;
+    }
+
+    // decorators 按由内到外的顺序排列
+    public Coffee get(int base, int... decorators) {
+        Node node = root(base);
+        for (int d : decorators) {
+            node = child(node, d);
+        }
+        return node.coffee;
+    }
+
+    private Node root(int base) {
+        Node[] r = roots;
+        Node node = base >= 0 && base < r.length ? r[base] : null;
+        return node != null ? node : createRoot(base);
+    }
+
+    private synchronized Node createRoot(int base) {
+        if (!hasBase(base)) {
+            throw new IllegalArgumentException("Unknown coffee type: " + base);
+        }
+        Node node = roots[base];
+        if (node == null) {
+            node = new Node(bases[base].get());
+            Node[] r = roots.clone();
+            r[base] = node;
+            roots = r;
+            size++;
+        }
+        return node;
+    }
+
+    private Node child(Node parent, int decorator) {
+        Node[] c = parent.children;
+        Node node = decorator >= 0 && decorator < c.length ? c[decorator] : null;
+        return node != null ? node : createChild(parent, decorator);
+    }
+
+    private synchronized Node createChild(Node parent, int decorator) {
+        if (!hasDecorator(decorator)) {
+            throw new IllegalArgumentException("Unknown condiment type: " + decorator);
+        }
+        Node[] c = parent.children;
+        if (decorator < c.length && c[decorator] != null) {
+            return c[decorator];
+        }
+        Node node = new Node(decorators[decorator].apply(parent.coffee));
+        // 复制后整体替换，读取方不加锁也只会看到完整的数组
+        c = Arrays.copyOf(c, Math.max(c.length, decorators.length));
+        c[decorator] = node;
+        parent.children = c;
+        size++;
+        return node;
+    }
+
+    private static void checkCode(int code) {
+        if (code < 0 || code > MAX_CODE) {
+            throw new IllegalArgumentException("Code must be between 0 and " + MAX_CODE + ": " + code);
+        }
+    }
+
+    // 不能直接创建泛型数组，只能先创建原始类型的数组再转换（rawtypes + unchecked）；
+    // 这两个数组不会传到类外，写入的元素都来自参数类型受检查的 registerBase / registerDecorator，转换是安全的
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Supplier<? extends Coffee>[] newSupplierArray(int n) {
+        return new Supplier[n];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static UnaryOperator<Coffee>[] newOperatorArray(int n) {
+        return new UnaryOperator[n];
+    }
+
+    private static final class Node {
+        private final Coffee coffee;
+        private volatile Node[] children = new Node[0];
+
+        Node(Coffee coffee) {
+            this.coffee = coffee;
+        }
+    }
+
+    // DecoratorExample 使用的编号：咖啡 1 = 黑咖啡、2 = 拿铁；调料 1 = 牛奶、2 = 糖
+    static CoffeeCombinations standard() {
+        return new CoffeeCombinations()
+                .registerBase(1, BlackCoffee::new)
+                .registerBase(2, Latte::new)
+                .registerDecorator(1, MilkDecorator::new)
+                .registerDecorator(2, SugarDecorator::new);
+    }
+}
+
+/*
+多百万行订单文件上的对比，两条路径都用 FastReader 读取同一个文件，并且只构建咖啡、不执行 brew（brew 的输出两边相同）：
+逐单构建：和原来的 DecoratorExample 一样，每行 new 一杯咖啡和一个装饰者。
+组合缓存：CoffeeCombinations.get(咖啡, 调料)。
+分配量来自 com.sun.management.ThreadMXBean，包含读取文件本身的分配。
+用法：java src.java.structuralPattern.CoffeeCombinationsBenchmark [订单行数]
+ */
+class CoffeeCombinationsBenchmark {
+    private static final Coffee[] SINK = new Coffee[1024];
+
+    public static void main(String[] args) throws IOException {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        File file = File.createTempFile("coffee-orders", ".txt");
+        file.deleteOnExit();
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+            int seed = 7;
+            for (int i = 0; i < orders; i++) {
+                seed = seed * 1103515245 + 12345;
+                out.write(Integer.toString(1 + ((seed >>> 16) & 1)));
+                out.write(' ');
+                out.write(Integer.toString(1 + ((seed >>> 20) & 1)));
+                out.write('\n');
+            }
+        }
+
+        CoffeeCombinations combinations = CoffeeCombinations.standard();
+        System.out.printf("%-14s %14s %16s%n", "path", "orders/s", "bytes/order");
+        for (int round = 0; round < 3; round++) {
+            for (boolean cached : new boolean[]{false, true}) {
+                long bytes = allocatedBytes();
+                long start = System.nanoTime();
+                int n = run(file, cached ? combinations : null);
+                long elapsed = System.nanoTime() - start;
+                bytes = allocatedBytes() - bytes;
+                if (round == 2) {
+                    System.out.printf("%-14s %14.0f %16.2f%n", cached ? "combinations" : "per-order",
+                            n * 1e9 / elapsed, bytes / (double) n);
+                }
+            }
+        }
+        System.out.println("distinct combinations: " + combinations.size());
+    }
+
+    private static int run(File file, CoffeeCombinations combinations) throws IOException {
+        int n = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            FastReader reader = new FastReader(in);
+            while (reader.hasNext()) {
+                int coffeeType = reader.nextInt();
+                int condimentType = reader.nextInt();
+                Coffee coffee;
+                if (combinations != null) {
+                    coffee = combinations.get(coffeeType, condimentType);
+                } else {
+                    coffee = coffeeType == 1 ? new BlackCoffee() : new Latte();
+                    coffee = condimentType == 1 ? new MilkDecorator(coffee) : new SugarDecorator(coffee);
+                }
+                SINK[n++ & (SINK.length - 1)] = coffee;
+            }
+        }
+        return n;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
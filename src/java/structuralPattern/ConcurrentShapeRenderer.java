@@ -0,0 +1,207 @@
+package src.java.structuralPattern;
+
+/*
+享元图形的并发绘制。
+
+原来的 Main 只能单线程运行：ConcreteShape 的 isFirstTime 由 Main.processCommand 在绘制后修改，多个线程同时绘制时
+“drawn / shared” 的判断会互相覆盖；ShapeFactory 也曾经使用非线程安全的 HashMap（现在改为按 ordinal 下标的数组）。
+
+ConcurrentShapeRenderer 的做法：
+一批命令按下标平均切成与线程数相同的连续区间，每个工作线程负责一个区间，写入自己的输出缓冲区，最后按区间顺序合并，输出顺序与输入一致。
+首次使用：不再修改享元上的标志，而是为每种 ShapeType 原子地记录它在整个输入中第一次出现的全局下标
+（每个线程先求出本区间内的最小下标，再用 accumulateAndGet(min) 合并），绘制时下标相等的那一行输出 “drawn”。
+这样在任意线程数下输出都和单线程完全相同。
+享元在绘制前按 ordinal 解析到数组中，热循环里没有哈希查找，也没有共享的可变状态。
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+class ConcurrentShapeRenderer implements AutoCloseable {
+    static final int DEFAULT_BATCH = 1 << 18;
+
+    private static final ShapeType[] TYPES = ShapeType.values();
+
+    private final ConcreteShape[] shapes = new ConcreteShape[TYPES.length];
+    private final int threads;
+    private final ExecutorService pool;
+    private final StringBuilder[] buffers;
+    // 每种 ShapeType 第一次出现的全局下标，尚未出现时为 Long.MAX_VALUE
+    private final AtomicLongArray firstUse = new AtomicLongArray(TYPES.length);
+    // 之前各批命令的总数，用于换算全局下标
+    private long rendered;
+
+    ConcurrentShapeRenderer(ShapeFactory factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    ConcurrentShapeRenderer(ShapeFactory factory, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        for (ShapeType type : TYPES) {
+            shapes[type.ordinal()] = (ConcreteShape) factory.getShape(type);
+            firstUse.set(type.ordinal(), Long.MAX_VALUE);
+        }
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "shape-renderer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.buffers = new StringBuilder[threads];
+        for (int i = 0; i < threads; i++) {
+            buffers[i] = new StringBuilder();
+        }
+    }
+
+    // 绘制一批命令，各线程的输出按顺序交给 sink（在调用线程中执行）；同一个渲染器的多批命令必须依次调用
+    public void render(ShapeCommands commands, Consumer<? super CharSequence> sink) {
+        int n = commands.size();
+        if (n == 0) {
+            return;
+        }
+        int parts = Math.min(threads, n);
+        long base = rendered;
+        List<Callable<Void>> scans = new ArrayList<>(parts);
+        List<Callable<Void>> draws = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            int from = (int) ((long) n * p / parts);
+            int to = (int) ((long) n * (p + 1) / parts);
+            StringBuilder out = buffers[p];
+            scans.add(() -> {
+                scan(commands, from, to, base);
+                return null;
+            });
+            draws.add(() -> {
+                out.setLength(0);
+                draw(commands, from, to, base, out);
+                return null;
+            });
+        }
+        // 两个阶段之间是一道屏障：所有区间的首次出现都合并完之后才开始绘制
+        invokeAll(scans);
+        invokeAll(draws);
+        rendered += n;
+        for (int p = 0; p < parts; p++) {
+            sink.accept(buffers[p]);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private void scan(ShapeCommands commands, int from, int to, long base) {
+        byte[] types = commands.types();
+        int[] local = new int[TYPES.length];
+        Arrays.fill(local, -1);
+        int missing = TYPES.length;
+        for (int i = from; i < to && missing > 0; i++) {
+            if (local[types[i]] < 0) {
+                local[types[i]] = i;
+                missing--;
+            }
+        }
+        for (int t = 0; t < TYPES.length; t++) {
+            if (local[t] >= 0) {
+                firstUse.accumulateAndGet(t, base + local[t], Math::min);
+            }
+        }
+    }
+
+    private void draw(ShapeCommands commands, int from, int to, long base, StringBuilder out) {
+        byte[] types = commands.types();
+        int[] xs = commands.xs();
+        int[] ys = commands.ys();
+        long[] first = new long[TYPES.length];
+        int[] counts = new int[TYPES.length];
+        for (int t = 0; t < TYPES.length; t++) {
+            first[t] = firstUse.get(t) - base;
+        }
+        for (int i = from; i < to; i++) {
+            int t = types[i];
+            shapes[t].drawAt(xs[i], ys[i], i == first[t], out);
+            counts[t]++;
+        }
+        // 调用次数按区间汇总后一次性累加
+        for (int t = 0; t < TYPES.length; t++) {
+            LongAdder calls = shapes[t].calls();
+            if (calls != null && counts[t] > 0) {
+                calls.add(counts[t]);
+            }
+        }
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rendering interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rendering failed", e.getCause());
+        }
+    }
+}
+
+/*
+并发绘制的扩展性：同一批命令在不同线程数下的吞吐量，以及输出是否和单线程完全一致。
+用法：java src.java.structuralPattern.ConcurrentRenderBenchmark [命令数] [线程数列表]
+ */
+class ConcurrentRenderBenchmark {
+    private static final ShapeType[] TYPES_FOR_BENCHMARK = ShapeType.values();
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        String[] threadList = (args.length > 1 ? args[1] : "1,2,4,8").split(",");
+
+        ShapeCommands commands = new ShapeCommands(n);
+        int seed = 31;
+        for (int i = 0; i < n; i++) {
+            seed = seed * 1103515245 + 12345;
+            commands.add(TYPES_FOR_BENCHMARK[(seed >>> 16) % TYPES_FOR_BENCHMARK.length],
+                    (seed >>> 4) & 4095, (seed >>> 10) & 4095);
+        }
+
+        StringBuilder expected = new StringBuilder(n * 24);
+        renderOnce(commands, 1, expected::append);
+
+        System.out.printf("%8s %16s %10s %10s%n", "threads", "commands/s", "speedup", "identical");
+        double baseline = 0;
+        for (String t : threadList) {
+            int threads = Integer.parseInt(t.trim());
+            // 预热一轮再计时
+            renderOnce(commands, threads, s -> { });
+            StringBuilder actual = new StringBuilder(expected.length());
+            long start = System.nanoTime();
+            renderOnce(commands, threads, actual::append);
+            long elapsed = System.nanoTime() - start;
+            double rate = n * 1e9 / elapsed;
+            if (baseline == 0) {
+                baseline = rate;
+            }
+            System.out.printf("%8d %16.0f %10.2f %10s%n", threads, rate, rate / baseline,
+                    actual.toString().contentEquals(expected));
+        }
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+    }
+
+    private static void renderOnce(ShapeCommands commands, int threads, Consumer<? super CharSequence> sink) {
+        try (ConcurrentShapeRenderer renderer = new ConcurrentShapeRenderer(new ShapeFactory(), threads)) {
+            renderer.render(commands, sink);
+        }
+    }
+}
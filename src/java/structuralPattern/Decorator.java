@@ -1,7 +1,7 @@
 package src.java.structuralPattern;
 
 
-import java.util.Scanner;
+import src.java.util.FastReader;
 
 // 咖啡接口
 interface Coffee {
@@ -25,7 +25,12 @@ class Latte implements Coffee {
 }
 
 // 装饰者抽象类
+// 子类通过 before / after 在被装饰对象之前、之后加入动作，这样装饰链可以用 FusedCoffee.seal 展开成一个扁平的动作数组；
+// 直接重写 brew 的子类仍然可以使用，只是融合时会被当作一个整体
 public abstract class Decorator implements Coffee {
+    // 被装饰的内层咖啡。
+    // CoffeeCombinations 缓存的装饰链、FusedCoffee.seal 展开的链会被多个线程、多个订单共享，
+    // 链一旦共享出去就不能再给任何一层的 coffee 重新赋值；需要不同的链时用 rewrap 复制
     protected Coffee coffee;
 
     public Decorator(Coffee coffee) {
@@ -34,7 +39,21 @@ public abstract class Decorator implements Coffee {
 
     @Override
     public void brew() {
+        before();
         coffee.brew();
+        after();
+    }
+
+    protected void before() {
+    }
+
+    protected void after() {
+    }
+
+    // 返回一个同样的装饰者，但包住的是 inner，用于在不修改原链的情况下复制装饰链（例如 TimingDecorator.instrument）；
+    // 返回 null 表示不支持复制
+    protected Decorator rewrap(Coffee inner) {
+        return null;
     }
 }
 
@@ -45,9 +64,13 @@ class MilkDecorator extends Decorator {
     }
 
     @Override
-    public void brew() {
+    protected void before() {
         System.out.println("Adding Milk");
-        super.brew();
+    }
+
+    @Override
+    protected Decorator rewrap(Coffee inner) {
+        return new MilkDecorator(inner);
     }
 }
 
@@ -58,44 +81,41 @@ class SugarDecorator extends Decorator {
     }
 
     @Override
-    public void brew() {
-        super.brew();
+    protected void after() {
         System.out.println("Adding Sugar");
     }
+
+    @Override
+    protected Decorator rewrap(Coffee inner) {
+        return new SugarDecorator(inner);
+    }
 }
 
 // 客户端代码
 class DecoratorExample {
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
+        FastReader reader = new FastReader(System.in);
+        // 相同的咖啡和调料组合共享同一条装饰链，不再为每个订单新建对象
+        CoffeeCombinations combinations = CoffeeCombinations.standard();
 
-        while (scanner.hasNext()) {
-            int coffeeType = scanner.nextInt();
-            int condimentType = scanner.nextInt();
+        while (reader.hasNext()) {
+            int coffeeType = reader.nextInt();
+            int condimentType = reader.nextInt();
 
             // 根据输入制作咖啡
-            Coffee coffee;
-            if (coffeeType == 1) {
-                coffee = new BlackCoffee();
-            } else if (coffeeType == 2) {
-                coffee = new Latte();
-            } else {
+            if (!combinations.hasBase(coffeeType)) {
                 System.out.println("Invalid coffee type");
                 continue;
             }
 
             // 根据输入添加调料
-            if (condimentType == 1) {
-                coffee = new MilkDecorator(coffee);
-            } else if (condimentType == 2) {
-                coffee = new SugarDecorator(coffee);
-            } else {
+            if (!combinations.hasDecorator(condimentType)) {
                 System.out.println("Invalid condiment type");
                 continue;
             }
 
             // 输出制作过程
-            coffee.brew();
+            combinations.get(coffeeType, condimentType).brew();
         }
     }
 }
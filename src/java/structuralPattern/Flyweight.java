@@ -14,8 +14,12 @@ package src.java.structuralPattern;
 在这种情况下，享元模式共享相同类型的图形对象，每种类型的图形对象只需创建一个共享实例，然后通过设置不同的坐标位置个性化每个对象，通过共享相同的内部状态，降低了对象的创建和内存占用成本。
  */
 
-import java.util.*;
-import java.util.Scanner;
+import src.java.util.FastReader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 // 步骤 1: 定义享元接口
 public interface Flyweight {
@@ -25,27 +29,48 @@ public interface Flyweight {
 
 // 步骤 2: 实现具体享元类
 class ConcreteFlyweight implements Flyweight {
+    // 估算的实例大小（64 位 JVM、压缩指针）：对象头 12 字节 + 两个引用各 4 字节
+    static final int ESTIMATED_BYTES = 24;
+
     private String intrinsicState; // 内部状态
+    private final LongAdder calls; // 外部状态调用次数，不统计时为 null
 
     public ConcreteFlyweight(String intrinsicState) {
+        this(intrinsicState, null);
+    }
+
+    public ConcreteFlyweight(String intrinsicState, LongAdder calls) {
         this.intrinsicState = intrinsicState;
+        this.calls = calls;
         System.out.println("ConcreteFlyweight created: " + intrinsicState);
     }
 
     @Override
     public void operation(String externalState) {
+        if (calls != null) {
+            calls.increment();
+        }
         System.out.println("Intrinsic State: " + intrinsicState + ", External State: " + externalState);
     }
 }
 
 class FlyweightFactory {
     private Map<String, Flyweight> flyweights = new HashMap<>();
+    private final FlyweightMetrics metrics = new FlyweightMetrics(ConcreteFlyweight.ESTIMATED_BYTES);
 
     public Flyweight getFlyweight(String key) {
-        if (!flyweights.containsKey(key)) {
-            flyweights.put(key, new ConcreteFlyweight(key));
+        Flyweight flyweight = flyweights.get(key);
+        if (flyweight == null) {
+            flyweight = new ConcreteFlyweight(key, metrics.created(key));
+            flyweights.put(key, flyweight);
+        } else {
+            metrics.hit();
         }
-        return flyweights.get(key);
+        return flyweight;
+    }
+
+    public FlyweightMetrics metrics() {
+        return metrics;
     }
 }
 
@@ -63,6 +88,10 @@ class FlyweightExample {
 
         Flyweight flyweight3 = factory.getFlyweight("A"); // 重复使用已存在的享元对象
         flyweight3.operation("External State 3");
+
+        // 注册后可以在 jconsole 中查看，也可以直接读取快照
+        factory.metrics().register("FlyweightExample");
+        System.out.println("Metrics: " + factory.metrics().snapshot());
     }
 }
 
@@ -87,23 +116,100 @@ class Position {
     public int getY() {
         return y;
     }
+
+    // 把坐标打包成一个 long（高 32 位是 x，低 32 位是 y），批量绘制时不需要为每个位置创建 Position
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int x(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int y(long packed) {
+        return (int) packed;
+    }
 }
 
 // 享元
 interface Shape {
     void draw(Position position);
+
+    // 批量绘制：第 i 个图形位于 (xs[offset + i], ys[offset + i])，输出追加到 out
+    void drawAll(int[] xs, int[] ys, int offset, int count, StringBuilder out);
+
+    // 批量绘制：坐标由 Position.pack 打包
+    void drawAll(long[] packed, int offset, int count, StringBuilder out);
 }
 
 class ConcreteShape implements Shape {
+    // 估算的实例大小：对象头 12 字节 + 两个引用 8 字节 + boolean 1 字节，按 8 字节对齐
+    static final int ESTIMATED_BYTES = 24;
+    // 和原来逐行 println 的换行符一致
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private ShapeType shapeType;
+    private final LongAdder calls;
 
     public ConcreteShape(ShapeType shapeType) {
+        this(shapeType, null);
+    }
+
+    public ConcreteShape(ShapeType shapeType, LongAdder calls) {
         this.shapeType = shapeType;
+        this.calls = calls;
     }
 
     @Override
     public void draw(Position position) {
-        System.out.println(shapeType + (isFirstTime ? " drawn" : " shared") + " at (" + position.getX() + ", " + position.getY() + ")");
+        StringBuilder line = new StringBuilder(32);
+        draw(position, line);
+        System.out.print(line);
+    }
+
+    void draw(Position position, StringBuilder out) {
+        if (calls != null) {
+            calls.increment();
+        }
+        appendLine(position.getX(), position.getY(), out);
+    }
+
+    // 批量绘制时第一个图形之后就是共享的了，和逐个调用 draw 再 setFirstTime(false) 的输出一致
+    @Override
+    public void drawAll(int[] xs, int[] ys, int offset, int count, StringBuilder out) {
+        for (int i = offset, end = offset + count; i < end; i++) {
+            appendLine(xs[i], ys[i], out);
+            isFirstTime = false;
+        }
+        if (calls != null) {
+            calls.add(count);
+        }
+    }
+
+    @Override
+    public void drawAll(long[] packed, int offset, int count, StringBuilder out) {
+        for (int i = offset, end = offset + count; i < end; i++) {
+            appendLine(Position.x(packed[i]), Position.y(packed[i]), out);
+            isFirstTime = false;
+        }
+        if (calls != null) {
+            calls.add(count);
+        }
+    }
+
+    // 并发绘制用：是否首次使用由调用方判定，不读写 isFirstTime，也不统计调用次数
+    void drawAt(int x, int y, boolean first, StringBuilder out) {
+        out.append(shapeType).append(first ? " drawn" : " shared")
+                .append(" at (").append(x).append(", ").append(y).append(')').append(LINE_SEPARATOR);
+    }
+
+    // 只用 StringBuilder 的 append，不拼接中间字符串
+    private void appendLine(int x, int y, StringBuilder out) {
+        drawAt(x, y, isFirstTime, out);
+    }
+
+    LongAdder calls() {
+        return calls;
     }
 
     private boolean isFirstTime = true;
@@ -113,34 +219,78 @@ class ConcreteShape implements Shape {
     }
 }
 
+// 按 ordinal 下标存放享元，命中时只是一次数组读取；未命中时加锁创建，多个线程同时请求也只创建一个
 class ShapeFactory {
-    private Map<ShapeType, Shape> shapes = new HashMap<>();
+    private final AtomicReferenceArray<Shape> shapes = new AtomicReferenceArray<>(ShapeType.values().length);
+    private final FlyweightMetrics metrics = new FlyweightMetrics(ConcreteShape.ESTIMATED_BYTES);
 
     public Shape getShape(ShapeType type) {
-        if (!shapes.containsKey(type)) {
-            shapes.put(type, new ConcreteShape(type));
+        Shape shape = shapes.get(type.ordinal());
+        if (shape == null) {
+            return create(type);
+        }
+        metrics.hit();
+        return shape;
+    }
+
+    private synchronized Shape create(ShapeType type) {
+        Shape shape = shapes.get(type.ordinal());
+        if (shape == null) {
+            shape = new ConcreteShape(type, metrics.created(type));
+            shapes.set(type.ordinal(), shape);
+        } else {
+            metrics.hit();
         }
-        return shapes.get(type);
+        return shape;
+    }
+
+    public FlyweightMetrics metrics() {
+        return metrics;
     }
 }
 
+
 class Main {
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
+        FastReader reader = new FastReader(System.in);
         ShapeFactory factory = new ShapeFactory();
 
-        while (scanner.hasNext()) {
-            String command = scanner.nextLine();
-            processCommand(factory, command);
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // 批量模式：按图形类型分组后一次绘制，输出按类型分组，而不是按输入顺序
+            ShapeBatch batch = new ShapeBatch();
+            while (reader.hasNext()) {
+                batch.add(ShapeType.valueOf(reader.nextToken()), reader.nextInt(), reader.nextInt());
+            }
+            batch.print(factory, System.out);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--concurrent")) {
+            // 并发模式：多个线程绘制，输出顺序与输入一致
+            ShapeCommands commands = new ShapeCommands(ConcurrentShapeRenderer.DEFAULT_BATCH);
+            try (ConcurrentShapeRenderer renderer = new ConcurrentShapeRenderer(factory)) {
+                while (reader.hasNext()) {
+                    commands.add(ShapeType.valueOf(reader.nextToken()), reader.nextInt(), reader.nextInt());
+                    if (commands.size() == ConcurrentShapeRenderer.DEFAULT_BATCH) {
+                        renderer.render(commands, System.out::append);
+                        commands.clear();
+                    }
+                }
+                renderer.render(commands, System.out::append);
+            }
+            System.out.flush();
+            return;
         }
-    }
 
-    private static void processCommand(ShapeFactory factory, String command) {
-        String[] parts = command.split(" ");
-        ShapeType type = ShapeType.valueOf(parts[0]);
-        int x = Integer.parseInt(parts[1]);
-        int y = Integer.parseInt(parts[2]);
+        // 每条命令：图形类型 x y，直接按记号读取，不再逐行 split
+        while (reader.hasNext()) {
+            ShapeType type = ShapeType.valueOf(reader.nextToken());
+            int x = reader.nextInt();
+            int y = reader.nextInt();
+            processCommand(factory, type, x, y);
+        }
+    }
 
+    private static void processCommand(ShapeFactory factory, ShapeType type, int x, int y) {
         Shape shape = factory.getShape(type);
         shape.draw(new Position(x, y));
         ((ConcreteShape) shape).setFirstTime(false);
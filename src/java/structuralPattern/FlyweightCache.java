@@ -0,0 +1,377 @@
+package src.java.structuralPattern;
+
+/*
+并发、有界的享元缓存。
+
+FlyweightFactory.getFlyweight 先 containsKey，再 put，最后 get，命中时也要查三次哈希表；HashMap 不是线程安全的；而且享元只增不减。
+FlyweightCache 针对这几点：
+命中时只做一次 ConcurrentHashMap.get，不加锁。
+未命中时在 ConcurrentHashMap.compute 中创建，多个线程同时请求同一个 key 时享元只会被创建一次。
+有界：超过 maxSize 后，由一个线程（tryLock 抢到锁的那个）淘汰访问频率最低的条目，直到降到容量的 90%；
+    每次淘汰后所有条目的频率减半，使频率能够反映最近的使用情况，而不是历史累计（近似的 LFU）。
+弱引用模式（可选）：缓存只弱引用享元，外部不再使用的享元可以被 GC 回收，回收后的条目在后续访问时清理。
+指标（可选）：传入 FlyweightMetrics 时，命中、创建，以及淘汰、回收导致的移除都会记录下来，存活实例数始终等于缓存中的享元数。
+ */
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class FlyweightCache<K, V> {
+    private static final int MAX_FREQUENCY = 1 << 20;
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final Function<? super K, ? extends V> factory;
+    private final int maxSize;
+    private final boolean weakValues;
+    private final ReferenceQueue<V> collected;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FlyweightMetrics metrics;
+
+    public FlyweightCache(Function<? super K, ? extends V> factory, int maxSize, boolean weakValues) {
+        this(factory, maxSize, weakValues, null);
+    }
+
+    // metrics 为 null 时不统计
+    public FlyweightCache(Function<? super K, ? extends V> factory, int maxSize, boolean weakValues,
+                          FlyweightMetrics metrics) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.weakValues = weakValues;
+        this.collected = weakValues ? new ReferenceQueue<>() : null;
+        this.metrics = metrics;
+    }
+
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            V value = entry.value();
+            if (value != null) {
+                entry.touch();
+                if (metrics != null) {
+                    metrics.hit();
+                }
+                return value;
+            }
+        }
+        return load(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(K key) {
+        Entry<K, V> entry = entries.get(key);
+        return entry != null && entry.value() != null;
+    }
+
+    private V load(K key) {
+        expungeCollected();
+        // compute 保证同一个 key 同时只有一个线程在创建
+        Object[] holder = new Object[1];
+        boolean[] created = new boolean[1];
+        while (true) {
+            Entry<K, V> entry = entries.compute(key, (k, old) -> {
+                if (old != null) {
+                    holder[0] = old.value();
+                    return old;
+                }
+                V value = factory.apply(k);
+                if (value == null) {
+                    throw new NullPointerException("Flyweight factory returned null for " + k);
+                }
+                holder[0] = value;
+                created[0] = true;
+                if (metrics != null) {
+                    metrics.created(k);
+                }
+                return new Entry<>(k, value, weakValues ? collected : null);
+            });
+            if (holder[0] != null) {
+                break;
+            }
+            // 弱引用已被回收的条目：先按移除处理，再重新创建
+            remove(entry);
+        }
+        if (metrics != null && !created[0]) {
+            metrics.hit();
+        }
+        if (entries.size() > maxSize) {
+            evict();
+        }
+        @SuppressWarnings("unchecked")
+        V value = (V) holder[0];
+        return value;
+    }
+
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            // 其他线程正在淘汰；但如果淘汰线程被挂起，其他线程不能无限地加入新条目，超出太多时等待它完成
+            if (entries.size() <= maxSize + maxSize / 10) {
+                return;
+            }
+            evictionLock.lock();
+        }
+        try {
+            int target = Math.max(1, maxSize - maxSize / 10);
+            int excess = entries.size() - target;
+            if (excess <= 0) {
+                return;
+            }
+            // 找出频率最低的 excess 个条目：按频率分桶计数，求出淘汰阈值
+            List<Entry<K, V>> snapshot = new ArrayList<>(entries.values());
+            int[] histogram = new int[32];
+            for (Entry<K, V> e : snapshot) {
+                histogram[bucket(e.frequency)]++;
+            }
+            int threshold = 0;
+            int below = 0;
+            while (threshold < histogram.length - 1 && below + histogram[threshold] < excess) {
+                below += histogram[threshold++];
+            }
+            // 先淘汰低于阈值的条目，再从阈值所在的桶中补足
+            int removed = 0;
+            for (Entry<K, V> e : snapshot) {
+                if (bucket(e.frequency) < threshold && remove(e)) {
+                    removed++;
+                }
+            }
+            for (Entry<K, V> e : snapshot) {
+                if (removed >= excess) {
+                    break;
+                }
+                if (bucket(e.frequency) == threshold && remove(e)) {
+                    removed++;
+                }
+            }
+            // 衰减：频率减半
+            for (Entry<K, V> e : snapshot) {
+                e.frequency >>>= 1;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // 条目 e 仍然是 entries 中的当前条目时移除它，每个条目只会计一次移除；
+    // 指标在同一个 key 的 compute 中更新，不会和这个 key 的重新创建交错，删除的一定是 e 自己的计数器
+    private boolean remove(Entry<K, V> e) {
+        boolean[] removed = new boolean[1];
+        entries.computeIfPresent(e.key, (k, current) -> {
+            if (current != e) {
+                return current;
+            }
+            removed[0] = true;
+            if (metrics != null) {
+                metrics.released(k);
+            }
+            return null;
+        });
+        return removed[0];
+    }
+
+    // 对数分桶，频率 0 在第 0 桶，1 在第 1 桶，2~3 在第 2 桶……
+    private static int bucket(int frequency) {
+        return 32 - Integer.numberOfLeadingZeros(frequency);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        if (collected == null) {
+            return;
+        }
+        WeakValue<K, V> ref;
+        while ((ref = (WeakValue<K, V>) collected.poll()) != null) {
+            Entry<K, V> entry = entries.get(ref.key);
+            if (entry != null && entry.ref == ref) {
+                remove(entry);
+            }
+        }
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V strong;
+        private final WeakValue<K, V> ref;
+        // 近似计数：并发自增可能丢失少量计数，对淘汰策略没有影响
+        private int frequency;
+
+        Entry(K key, V value, ReferenceQueue<V> queue) {
+            this.key = key;
+            if (queue == null) {
+                this.strong = value;
+                this.ref = null;
+            } else {
+                this.strong = null;
+                this.ref = new WeakValue<>(key, value, queue);
+            }
+        }
+
+        V value() {
+            return ref == null ? strong : ref.get();
+        }
+
+        // 频率较高后改为按 1/16 的概率计数，减少多个线程反复写同一条缓存行
+        void touch() {
+            int f = frequency;
+            if (f < 16 || (f < MAX_FREQUENCY && (ThreadLocalRandom.current().nextInt() & 15) == 0)) {
+                frequency = f + 1;
+            }
+        }
+    }
+
+    private static final class WeakValue<K, V> extends WeakReference<V> {
+        private final K key;
+
+        WeakValue(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
+
+// 线程安全的享元工厂
+class ConcurrentFlyweightFactory {
+    private final FlyweightMetrics metrics = new FlyweightMetrics(ConcreteFlyweight.ESTIMATED_BYTES);
+    private final FlyweightCache<String, Flyweight> cache;
+
+    ConcurrentFlyweightFactory(int maxSize, boolean weakValues) {
+        this.cache = new FlyweightCache<>(key -> new ConcreteFlyweight(key, metrics.counter(key)),
+                maxSize, weakValues, metrics);
+    }
+
+    ConcurrentFlyweightFactory(Function<String, Flyweight> creator, int maxSize, boolean weakValues) {
+        this.cache = new FlyweightCache<>(creator, maxSize, weakValues, metrics);
+    }
+
+    public Flyweight getFlyweight(String key) {
+        return cache.get(key);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public FlyweightMetrics metrics() {
+        return metrics;
+    }
+}
+
+/*
+多线程获取享元的吞吐量对比，key 集合在容量之内（全部命中）和超过容量（触发淘汰）两种情况。
+原来的 FlyweightFactory 不是线程安全的，只在预先填满、之后只读的情况下参与多线程对比，另外给出加 synchronized 的版本。
+用法：java src.java.structuralPattern.FlyweightCacheBenchmark [每轮毫秒数] [线程数列表]
+ */
+class FlyweightCacheBenchmark {
+    private static volatile boolean running;
+    private static volatile Object sink;
+
+    // 不打印日志的享元，避免创建时的输出影响测量
+    private static final class QuietFlyweight implements Flyweight {
+        private final String intrinsicState;
+
+        QuietFlyweight(String intrinsicState) {
+            this.intrinsicState = intrinsicState;
+        }
+
+        @Override
+        public void operation(String externalState) {
+            sink = intrinsicState + externalState;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long durationMs = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        String[] threadList = (args.length > 1 ? args[1] : "1,2,4,8").split(",");
+
+        int hotKeys = 1000;
+        String[] keys = new String[hotKeys];
+        for (int i = 0; i < hotKeys; i++) {
+            keys[i] = new String("key-" + i);
+        }
+        // 原来的工厂：预先填满，之后只读
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        FlyweightFactory legacy = new FlyweightFactory();
+        for (String key : keys) {
+            legacy.getFlyweight(key);
+        }
+        System.setOut(out);
+
+        ConcurrentFlyweightFactory bounded = new ConcurrentFlyweightFactory(QuietFlyweight::new, 2 * hotKeys, false);
+        ConcurrentFlyweightFactory weak = new ConcurrentFlyweightFactory(QuietFlyweight::new, 2 * hotKeys, true);
+        ConcurrentFlyweightFactory small = new ConcurrentFlyweightFactory(QuietFlyweight::new, hotKeys / 4, false);
+
+        System.out.printf("%-24s %8s %16s%n", "factory", "threads", "ops/s");
+        for (String t : threadList) {
+            int threads = Integer.parseInt(t.trim());
+            report("FlyweightFactory(ro)", threads, run(legacy::getFlyweight, keys, threads, durationMs));
+            report("FlyweightFactory(sync)", threads, run(k -> {
+                synchronized (legacy) {
+                    return legacy.getFlyweight(k);
+                }
+            }, keys, threads, durationMs));
+            report("FlyweightCache", threads, run(bounded::getFlyweight, keys, threads, durationMs));
+            report("FlyweightCache(weak)", threads, run(weak::getFlyweight, keys, threads, durationMs));
+            report("FlyweightCache(evicting)", threads, run(small::getFlyweight, keys, threads, durationMs));
+        }
+        System.out.printf("evicting cache size: %d (max %d), live instances: %d, hit rate: %.2f%%%n", small.size(),
+                hotKeys / 4, small.metrics().getLiveInstances(), small.metrics().getHitRate() * 100);
+    }
+
+    private static void report(String name, int threads, double opsPerSecond) {
+        System.out.printf("%-24s %8d %16.0f%n", name, threads, opsPerSecond);
+    }
+
+    private static double run(Function<String, Flyweight> lookup, String[] keys, int threads, long durationMs)
+            throws InterruptedException {
+        long[] counts = new long[threads];
+        Thread[] pool = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int id = i;
+            pool[i] = new Thread(() -> {
+                long n = 0;
+                int k = id * 7919;
+                Flyweight last = null;
+                while (running) {
+                    for (int j = 0; j < 256; j++) {
+                        // 倾斜的访问分布：一半的请求落在前 1/8 的 key 上
+                        int index = (k & 1) == 0 ? (k >>> 1) % (keys.length / 8) : (k >>> 1) % keys.length;
+                        last = lookup.apply(keys[index]);
+                        k = k * 1103515245 + 12345 & Integer.MAX_VALUE;
+                    }
+                    n += 256;
+                }
+                counts[id] = n;
+                sink = last;
+            });
+        }
+        running = true;
+        long start = System.nanoTime();
+        for (Thread t : pool) {
+            t.start();
+        }
+        Thread.sleep(durationMs);
+        running = false;
+        for (Thread t : pool) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        return total * 1e9 / elapsed;
+    }
+}
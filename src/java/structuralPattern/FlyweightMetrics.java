@@ -0,0 +1,201 @@
+package src.java.structuralPattern;
+
+/*
+享元的运行指标：享元到底有没有省下内存。
+
+统计的内容：
+命中 / 未命中：工厂每次查找是否复用了已有的享元。
+存活的内部状态实例数：创建时加一，从工厂中移除（FlyweightCache 淘汰、弱引用被回收）时减一。
+每个享元处理的外部状态调用次数：创建享元时为它分配一个计数器，享元在 operation / draw 中自增。
+    计数器按原始的 key 对象保存（不是它的字符串形式），享元从工厂中移除时计数器一起删除，
+    所以有界的 FlyweightCache 中计数器的数量不会超过缓存本身的大小。
+节省的字节数估算：如果不共享，每次请求都要分配一个新实例，所以节省量 = (请求次数 - 存活实例数) * 单个实例的估算大小。
+
+热路径上只有一次 LongAdder.increment，多个线程同时自增时分散到不同的单元，不会争抢同一个计数。
+读取时通过 snapshot() 拿到一份不可变的快照，或者注册为 JMX MBean 后在监控工具中查看。
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class FlyweightMetrics implements FlyweightMetricsMBean {
+    private final int bytesPerInstance;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder live = new LongAdder();
+    private final Map<Object, LongAdder> calls = new ConcurrentHashMap<>();
+
+    // bytesPerInstance：不共享时每次请求需要分配的字节数（估算值）
+    public FlyweightMetrics(int bytesPerInstance) {
+        this.bytesPerInstance = bytesPerInstance;
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    // 记录一次未命中并创建了新实例，返回该享元的外部调用计数器
+    public LongAdder created(Object key) {
+        misses.increment();
+        live.increment();
+        return counter(key);
+    }
+
+    // 某个享元的外部调用计数器，同一个 key 在被移除之前始终得到同一个计数器
+    public LongAdder counter(Object key) {
+        return calls.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    // 享元被移出工厂，不再计入存活实例，它的计数器也一起删除，重新创建的享元从 0 开始计数。
+    // 调用方需要保证同一个 key 的移除和重新创建不会交错（FlyweightCache 在同一个 key 的 compute 中进行）
+    public void released(Object key) {
+        live.decrement();
+        calls.remove(key);
+    }
+
+    // 注册到平台 MBeanServer，ObjectName 为 src.java.structuralPattern:type=Flyweight,name=<name>
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("src.java.structuralPattern:type=Flyweight,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register flyweight metrics " + name, e);
+        }
+    }
+
+    // 复制所有存活享元的计数，按 key 的字符串形式排序；只用于查看，监控属性直接读计数器
+    public Snapshot snapshot() {
+        List<Map.Entry<Object, LongAdder>> sorted = new ArrayList<>(calls.entrySet());
+        sorted.sort((a, b) -> String.valueOf(a.getKey()).compareTo(String.valueOf(b.getKey())));
+        Map<Object, Long> perFlyweight = new LinkedHashMap<>();
+        for (Map.Entry<Object, LongAdder> e : sorted) {
+            perFlyweight.put(e.getKey(), e.getValue().sum());
+        }
+        return new Snapshot(hits.sum(), misses.sum(), live.sum(), bytesPerInstance, perFlyweight);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long h = hits.sum();
+        long requests = h + misses.sum();
+        return requests == 0 ? 0 : h / (double) requests;
+    }
+
+    @Override
+    public long getLiveInstances() {
+        return live.sum();
+    }
+
+    @Override
+    public long getExtrinsicCalls() {
+        long total = 0;
+        for (LongAdder counter : calls.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getEstimatedBytesSaved() {
+        return Math.max(0, hits.sum() + misses.sum() - live.sum()) * bytesPerInstance;
+    }
+
+    // JMX 中只能传字符串，字符串形式相同的多个 key 的计数合在一起返回
+    @Override
+    public long callsFor(String key) {
+        long total = 0;
+        for (Map.Entry<Object, LongAdder> e : calls.entrySet()) {
+            if (String.valueOf(e.getKey()).equals(key)) {
+                total += e.getValue().sum();
+            }
+        }
+        return total;
+    }
+
+    // 某个 key 的享元处理过的外部状态调用次数，不存在时返回 0
+    public long calls(Object key) {
+        LongAdder counter = calls.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // 只清零命中、未命中和调用次数；存活实例数反映的是工厂当前的状态，不清零
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        for (LongAdder counter : calls.values()) {
+            counter.reset();
+        }
+    }
+
+    // 某一时刻的指标快照，各项计数分别读取，并发更新时彼此之间可能有微小的偏差
+    public static final class Snapshot {
+        private final long hits;
+        private final long misses;
+        private final long liveInstances;
+        private final int bytesPerInstance;
+        private final Map<Object, Long> callsPerFlyweight;
+
+        Snapshot(long hits, long misses, long liveInstances, int bytesPerInstance, Map<Object, Long> callsPerFlyweight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.liveInstances = liveInstances;
+            this.bytesPerInstance = bytesPerInstance;
+            this.callsPerFlyweight = Collections.unmodifiableMap(callsPerFlyweight);
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public long requests() {
+            return hits + misses;
+        }
+
+        public double hitRate() {
+            long requests = requests();
+            return requests == 0 ? 0 : hits / (double) requests;
+        }
+
+        public long liveInstances() {
+            return liveInstances;
+        }
+
+        public Map<Object, Long> callsPerFlyweight() {
+            return callsPerFlyweight;
+        }
+
+        public long estimatedBytesSaved() {
+            return Math.max(0, requests() - liveInstances) * bytesPerInstance;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, misses=%d, hitRate=%.2f%%, live=%d, bytesSaved~%d, calls=%s",
+                    hits, misses, hitRate() * 100, liveInstances, estimatedBytesSaved(), callsPerFlyweight);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package src.java.structuralPattern;
+
+// FlyweightMetrics 的 JMX 管理接口，可以在 jconsole / VisualVM 的 MBeans 页中查看
+public interface FlyweightMetricsMBean {
+    long getHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getLiveInstances();
+
+    long getExtrinsicCalls();
+
+    long getEstimatedBytesSaved();
+
+    // 字符串形式为 key 的享元处理过的外部状态调用次数，未知的 key 返回 0
+    long callsFor(String key);
+
+    // 清零命中、未命中和调用次数；存活实例数是工厂当前的状态，不受 reset 影响
+    void reset();
+}
@@ -0,0 +1,228 @@
+package src.java.structuralPattern;
+
+/*
+装饰链融合：把层层嵌套的装饰者展开成一个扁平的执行计划。
+
+每个 Decorator.brew 都要虚调用内层的 coffee.brew()，装饰链很深时这是一条很长的递归调用链：
+同一个调用点上出现多种装饰者类型（megamorphic），JIT 无法内联，代价随深度线性增长，栈也随之加深。
+FusedCoffee.seal 从最外层开始沿着 coffee 字段向内遍历，把每一层的 before / after 动作按执行顺序收集到两个数组里，
+执行时用两个循环代替递归：先按从外到内的顺序执行 before，再调用最内层的咖啡，最后按从内到外的顺序执行 after。
+没有重写 before / after 的层（空动作）在融合时直接去掉，所以每层通常只剩一次调用。
+直接重写了 brew 的装饰者无法拆开，会连同它内层的部分一起作为“最内层的咖啡”执行。
+
+融合之后原链上的 coffee 字段不能再被修改（见 Decorator），否则融合的结果和原链会不一致。
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class FusedCoffee implements Coffee {
+    // 每个装饰者类是否重写了 brew / before / after
+    private static final ClassValue<boolean[]> OVERRIDES = new ClassValue<>() {
+        @Override
+        protected boolean[] computeValue(Class<?> type) {
+            return new boolean[]{overrides(type, "brew"), overrides(type, "before"), overrides(type, "after")};
+        }
+    };
+
+    private final Decorator[] befores;
+    private final Coffee core;
+    private final Decorator[] afters;
+
+    private FusedCoffee(Decorator[] befores, Coffee core, Decorator[] afters) {
+        this.befores = befores;
+        this.core = core;
+        this.afters = afters;
+    }
+
+    public static Coffee seal(Coffee coffee) {
+        List<Decorator> befores = new ArrayList<>();
+        List<Decorator> afters = new ArrayList<>();
+        Coffee current = coffee;
+        while (current instanceof Decorator) {
+            Decorator decorator = (Decorator) current;
+            boolean[] overrides = OVERRIDES.get(decorator.getClass());
+            if (overrides[0]) {
+                break;
+            }
+            if (overrides[1]) {
+                befores.add(decorator);
+            }
+            if (overrides[2]) {
+                afters.add(decorator);
+            }
+            current = decorator.coffee;
+        }
+        if (current == coffee) {
+            return coffee;
+        }
+        // after 的执行顺序是从内到外
+        Decorator[] reversed = new Decorator[afters.size()];
+        for (int i = 0; i < reversed.length; i++) {
+            reversed[i] = afters.get(reversed.length - 1 - i);
+        }
+        return new FusedCoffee(befores.toArray(new Decorator[0]), current, reversed);
+    }
+
+    @Override
+    public void brew() {
+        for (Decorator d : befores) {
+            d.before();
+        }
+        core.brew();
+        for (Decorator d : afters) {
+            d.after();
+        }
+    }
+
+    public int depth() {
+        return befores.length + afters.length;
+    }
+
+    private static boolean overrides(Class<?> type, String method) {
+        for (Class<?> c = type; c != Decorator.class && c != null; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(method);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // 继续检查父类
+            }
+        }
+        return false;
+    }
+}
+
+/*
+嵌套执行与融合执行的对比，装饰链深度分别为 1、10、100。
+MilkDecorator / SugarDecorator 的动作是打印，I/O 会完全掩盖调用本身的开销，
+所以这里用结构相同、动作只是累加计数的四种装饰者交替叠加，让 Decorator.brew 中的调用点是 megamorphic 的，和真实的混合装饰链一致。
+两种形式分别在 timeNested / timeFused 中计时，各自有独立的 brew 调用点，一种形式的类型信息不会影响另一种的内联。
+用法：java src.java.structuralPattern.DecoratorFusionBenchmark [每种深度的调用次数]
+ */
+class DecoratorFusionBenchmark {
+    static long counter;
+
+    static final class Base implements Coffee {
+        @Override
+        public void brew() {
+            counter++;
+        }
+    }
+
+    static final class Milk extends Decorator {
+        Milk(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        protected void before() {
+            counter += 2;
+        }
+    }
+
+    static final class Sugar extends Decorator {
+        Sugar(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        protected void after() {
+            counter += 3;
+        }
+    }
+
+    static final class Foam extends Decorator {
+        Foam(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        protected void before() {
+            counter ^= 5;
+        }
+    }
+
+    static final class Syrup extends Decorator {
+        Syrup(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        protected void after() {
+            counter -= 7;
+        }
+    }
+
+    public static void main(String[] args) {
+        long calls = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+        int[] depths = {1, 10, 100};
+        Coffee[] nested = new Coffee[depths.length];
+        Coffee[] fused = new Coffee[depths.length];
+        for (int i = 0; i < depths.length; i++) {
+            nested[i] = build(depths[i]);
+            fused[i] = FusedCoffee.seal(nested[i]);
+        }
+        // 两种形式的结果必须一致
+        for (int i = 0; i < depths.length; i++) {
+            counter = 0;
+            nested[i].brew();
+            long expected = counter;
+            counter = 0;
+            fused[i].brew();
+            if (counter != expected) {
+                throw new IllegalStateException("Fused chain differs at depth " + depths[i]);
+            }
+        }
+
+        System.out.printf("%6s %14s %14s %10s%n", "depth", "nested ns/op", "fused ns/op", "speedup");
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < depths.length; i++) {
+                long n = Math.max(1, calls / depths[i]);
+                double nestedNs = timeNested(nested[i], n);
+                double fusedNs = timeFused(fused[i], n);
+                if (round == 2) {
+                    System.out.printf("%6d %14.2f %14.2f %10.2f%n", depths[i], nestedNs, fusedNs, nestedNs / fusedNs);
+                }
+            }
+        }
+        System.out.println("checksum: " + counter);
+    }
+
+    private static Coffee build(int depth) {
+        Coffee coffee = new Base();
+        for (int i = 0; i < depth; i++) {
+            switch (i & 3) {
+                case 0:
+                    coffee = new Milk(coffee);
+                    break;
+                case 1:
+                    coffee = new Sugar(coffee);
+                    break;
+                case 2:
+                    coffee = new Foam(coffee);
+                    break;
+                default:
+                    coffee = new Syrup(coffee);
+                    break;
+            }
+        }
+        return coffee;
+    }
+
+    private static double timeNested(Coffee coffee, long n) {
+        long start = System.nanoTime();
+        for (long i = 0; i < n; i++) {
+            coffee.brew();
+        }
+        return (System.nanoTime() - start) / (double) n;
+    }
+
+    // 和 timeNested 相同，但调用点只会看到 FusedCoffee
+    private static double timeFused(Coffee coffee, long n) {
+        long start = System.nanoTime();
+        for (long i = 0; i < n; i++) {
+            coffee.brew();
+        }
+        return (System.nanoTime() - start) / (double) n;
+    }
+}
@@ -0,0 +1,381 @@
+package src.java.structuralPattern;
+
+/*
+内部状态字典：把享元的内部状态（字符串）编码成连续的 int id。
+
+FlyweightFactory 用 HashMap<String, Flyweight> 保存享元，ConcreteFlyweight 再持有一份 String：
+每个 key 至少有一个 String 对象、一个 byte[]、一个 HashMap.Node，加上享元本身，
+key 很多（几百万个，彼此不同但结构相似）的时候，这些小对象的对象头和指针比字符内容本身还大。
+
+IntrinsicStateDictionary 的布局：
+arena：所有 key 的 UTF-8 字节依次存放在一个 byte[] 中。
+offsets：第 id 个 key 的字节位于 arena[offsets[id], offsets[id + 1])。
+hashes：每个 id 的哈希值，扩容重建索引时不需要重新计算。
+slots：开放寻址的索引表，存放 id + 1（0 表示空槽），装载率不超过 1/2。
+每个 key 的固定开销只有 offsets、hashes 各 4 字节和两个以上的索引槽，没有任何对象头。
+
+intern 时对 key 计算一次哈希并分配 id，之后调用方只需持有 id，通过 id 取享元就是一次数组访问，不再对整个字符串重新哈希。
+字典只追加、不删除，和 FlyweightFactory 一样不是线程安全的。
+ */
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class IntrinsicStateDictionary {
+    private byte[] arena;
+    private int arenaSize;
+    private int[] offsets;
+    private int[] hashes;
+    private int[] slots;
+    private int size;
+    // intern 时编码 key 的临时缓冲区
+    private byte[] scratch = new byte[64];
+
+    public IntrinsicStateDictionary() {
+        this(1024, 16);
+    }
+
+    public IntrinsicStateDictionary(int expectedKeys, int averageKeyBytes) {
+        int keys = Math.max(16, expectedKeys);
+        arena = new byte[(int) Math.min(Integer.MAX_VALUE - 8, (long) keys * Math.max(1, averageKeyBytes))];
+        offsets = new int[keys + 1];
+        hashes = new int[keys];
+        slots = new int[tableSize(keys * 2)];
+    }
+
+    // 返回 key 的 id，不存在时分配一个新的 id（从 0 开始连续分配）
+    public int intern(CharSequence key) {
+        int length = encode(key);
+        int hash = hash(scratch, 0, length);
+        int mask = slots.length - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                int id = append(hash, length);
+                slots[i] = id + 1;
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+                return id;
+            }
+            if (matches(slot - 1, hash, length)) {
+                return slot - 1;
+            }
+        }
+    }
+
+    // 返回 key 的 id，不存在时返回 -1
+    public int find(CharSequence key) {
+        int length = encode(key);
+        int hash = hash(scratch, 0, length);
+        int mask = slots.length - 1;
+        for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (matches(slot - 1, hash, length)) {
+                return slot - 1;
+            }
+        }
+    }
+
+    public String stringOf(int id) {
+        checkId(id);
+        return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    // 把 key 追加到 out，ASCII 内容不产生任何中间对象
+    public StringBuilder appendTo(int id, StringBuilder out) {
+        checkId(id);
+        int from = offsets[id];
+        int to = offsets[id + 1];
+        for (int i = from; i < to; i++) {
+            if (arena[i] < 0) {
+                return out.append(new String(arena, i, to - i, StandardCharsets.UTF_8));
+            }
+            out.append((char) arena[i]);
+        }
+        return out;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 字典自身占用的数组字节数（按容量计算，不含对象头）
+    public long footprintBytes() {
+        return arena.length + 4L * (offsets.length + hashes.length + slots.length);
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown intrinsic state id: " + id);
+        }
+    }
+
+    private boolean matches(int id, int hash, int length) {
+        if (hashes[id] != hash) {
+            return false;
+        }
+        int from = offsets[id];
+        return offsets[id + 1] - from == length
+                && Arrays.equals(arena, from, from + length, scratch, 0, length);
+    }
+
+    private int append(int hash, int length) {
+        if ((long) arenaSize + length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Intrinsic state arena is full");
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max((long) arena.length * 2, (long) arenaSize + length)));
+        }
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2 + 1);
+        }
+        System.arraycopy(scratch, 0, arena, arenaSize, length);
+        arenaSize += length;
+        hashes[size] = hash;
+        offsets[size + 1] = arenaSize;
+        return size++;
+    }
+
+    private void rehash() {
+        int[] table = new int[slots.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = mix(hashes[id]) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = id + 1;
+        }
+        slots = table;
+    }
+
+    // 编码成 UTF-8 写入 scratch，返回字节数
+    private int encode(CharSequence key) {
+        int n = key.length();
+        if (scratch.length < n * 3) {
+            scratch = new byte[Math.max(scratch.length * 2, n * 3)];
+        }
+        byte[] buf = scratch;
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | c >> 6);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, key.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | cp >> 18);
+                buf[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                buf[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                buf[pos++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                buf[pos++] = (byte) (0xE0 | c >> 12);
+                buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return pos;
+    }
+
+    private static int hash(byte[] bytes, int from, int length) {
+        int h = 0;
+        for (int i = from, end = from + length; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    private static int mix(int h) {
+        int x = h * 0x9E3779B1;
+        return x ^ (x >>> 16);
+    }
+
+    private static int tableSize(int n) {
+        return Integer.highestOneBit(Math.max(2, n) - 1) << 1;
+    }
+}
+
+// 按 id 寻址的享元，只保存字典和 id，不持有 String
+class EncodedFlyweight implements Flyweight {
+    private final IntrinsicStateDictionary dictionary;
+    private final int id;
+
+    EncodedFlyweight(IntrinsicStateDictionary dictionary, int id) {
+        this.dictionary = dictionary;
+        this.id = id;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public void operation(String externalState) {
+        StringBuilder line = new StringBuilder("Intrinsic State: ");
+        dictionary.appendTo(id, line).append(", External State: ").append(externalState);
+        System.out.println(line);
+    }
+}
+
+// 基于字典的享元工厂：key 只在 idOf 时哈希一次，之后用 id 取享元就是一次数组访问，享元在第一次使用时才创建
+class DictionaryFlyweightFactory {
+    private final IntrinsicStateDictionary dictionary;
+    private Flyweight[] flyweights;
+
+    DictionaryFlyweightFactory() {
+        this(new IntrinsicStateDictionary());
+    }
+
+    DictionaryFlyweightFactory(IntrinsicStateDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.flyweights = new Flyweight[Math.max(16, dictionary.size())];
+    }
+
+    public int idOf(String key) {
+        return dictionary.intern(key);
+    }
+
+    public Flyweight getFlyweight(int id) {
+        // 先校验 id 是否由字典分配，伪造的 id 不能触发扩容
+        if (id < 0 || id >= dictionary.size()) {
+            throw new IndexOutOfBoundsException("Unknown intrinsic state id: " + id);
+        }
+        if (id >= flyweights.length) {
+            flyweights = Arrays.copyOf(flyweights, Math.max(id + 1, flyweights.length * 2));
+        }
+        Flyweight flyweight = flyweights[id];
+        if (flyweight == null) {
+            flyweight = new EncodedFlyweight(dictionary, id);
+            flyweights[id] = flyweight;
+        }
+        return flyweight;
+    }
+
+    public Flyweight getFlyweight(String key) {
+        return getFlyweight(idOf(key));
+    }
+
+    public IntrinsicStateDictionary dictionary() {
+        return dictionary;
+    }
+}
+
+/*
+堆占用对比，key 数量分别为 100 万和 1000 万：
+HashMap：和 FlyweightFactory 相同的结构，HashMap<String, Flyweight>，每个享元持有自己的 String。
+字典：IntrinsicStateDictionary 保存全部 key；“字典 + 享元”是在此基础上为每个 id 创建一个 EncodedFlyweight。
+占用量是构建前后两次 Full GC 之后已用堆的差值；同时给出按 key 查找和按 id 查找的耗时。
+key 的形式类似 “region-07/store-0042/sku-00123456”，彼此不同但前缀大量重复。
+1000 万个 key 的 HashMap 需要 1GB 以上的堆，用法：java -Xmx4g src.java.structuralPattern.IntrinsicStateBenchmark [key 数量列表]
+ */
+class IntrinsicStateBenchmark {
+    private static volatile Object sink;
+
+    // 不打印日志的享元，和 ConcreteFlyweight 一样持有内部状态字符串
+    private static final class StringFlyweight implements Flyweight {
+        private final String intrinsicState;
+
+        StringFlyweight(String intrinsicState) {
+            this.intrinsicState = intrinsicState;
+        }
+
+        @Override
+        public void operation(String externalState) {
+            sink = intrinsicState;
+        }
+    }
+
+    public static void main(String[] args) {
+        String[] counts = (args.length > 0 ? args[0] : "1000000,10000000").split(",");
+        System.out.printf("%10s %-22s %10s %10s %14s %14s%n",
+                "keys", "store", "heap MB", "bytes/key", "by key (ns)", "by id (ns)");
+        for (String c : counts) {
+            int n = Integer.parseInt(c.trim());
+            String[] queries = new String[Math.min(n, 1_000_000)];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = key((int) (i * 7919L % n));
+            }
+            measureHashMap(n, queries);
+            measureDictionary(n, queries, false);
+            measureDictionary(n, queries, true);
+        }
+    }
+
+    static String key(int i) {
+        StringBuilder sb = new StringBuilder(40);
+        sb.append("region-").append(i % 16 < 10 ? "0" : "").append(i % 16)
+                .append("/store-").append(1000 + i % 977)
+                .append("/sku-").append(10_000_000 + i);
+        return sb.toString();
+    }
+
+    private static void measureHashMap(int n, String[] queries) {
+        long before = usedHeap();
+        Map<String, Flyweight> flyweights = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String key = key(i);
+            flyweights.put(key, new StringFlyweight(key));
+        }
+        long bytes = usedHeap() - before;
+        long start = System.nanoTime();
+        for (String query : queries) {
+            sink = flyweights.get(query);
+        }
+        report(n, "HashMap<String>", bytes, (System.nanoTime() - start) / (double) queries.length, Double.NaN);
+        sink = flyweights;
+    }
+
+    private static void measureDictionary(int n, String[] queries, boolean materialize) {
+        long before = usedHeap();
+        DictionaryFlyweightFactory factory = new DictionaryFlyweightFactory(new IntrinsicStateDictionary(n, 34));
+        for (int i = 0; i < n; i++) {
+            int id = factory.idOf(key(i));
+            if (materialize) {
+                factory.getFlyweight(id);
+            }
+        }
+        long bytes = usedHeap() - before;
+
+        // 按 key 查找：每次都要编码、哈希整个字符串
+        int[] ids = new int[queries.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < queries.length; i++) {
+            ids[i] = factory.dictionary().find(queries[i]);
+        }
+        double byKey = (System.nanoTime() - start) / (double) queries.length;
+        // 按 id 查找：调用方已经持有 id；只在享元都已创建时计时，否则测到的是创建享元的开销
+        double byId = Double.NaN;
+        if (materialize) {
+            start = System.nanoTime();
+            for (int id : ids) {
+                sink = factory.getFlyweight(id);
+            }
+            byId = (System.nanoTime() - start) / (double) ids.length;
+        }
+        report(n, materialize ? "dictionary+flyweights" : "dictionary", bytes, byKey, byId);
+        sink = factory;
+    }
+
+    private static void report(int n, String store, long bytes, double byKeyNs, double byIdNs) {
+        System.out.printf("%10d %-22s %10.1f %10.1f %14.1f %14s%n", n, store, bytes / 1e6, bytes / (double) n,
+                byKeyNs, Double.isNaN(byIdNs) ? "-" : String.format("%.1f", byIdNs));
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
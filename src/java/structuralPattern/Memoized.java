@@ -0,0 +1,12 @@
+package src.java.structuralPattern;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 标注在接口方法上，表示该方法是纯函数（结果只取决于参数），可以按参数缓存
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@interface Memoized {
+}
@@ -0,0 +1,9 @@
+package src.java.structuralPattern;
+
+// 示例接口：查询价格是纯函数，而且代价较高
+interface PriceService {
+    @Memoized
+    long priceOf(String sku);
+
+    void audit(String message);
+}
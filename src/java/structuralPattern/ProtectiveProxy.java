@@ -0,0 +1,212 @@
+package src.java.structuralPattern;
+
+/*
+保护性代理：在 Proxy 的“访问真实对象之前/之后”的位置加入限流和隔离。
+
+一个变慢的依赖会让调用它的线程全部阻塞在那里，最终耗尽整个线程池，连不相关的请求也无法处理。
+ProtectiveProxy 基于 JDK 动态代理包装任意接口，每次调用依次经过：
+令牌桶限流（TokenBucket）：按固定速率发放许可，允许一定的突发量，没有许可的调用立即拒绝。
+舱壁隔离（Bulkhead）：同时执行的调用数有上限；超过上限的调用最多等待 maxWait，
+    同时在等待的调用数也有上限，等待队列满了立即拒绝，不会让越来越多的线程堆积在一个依赖上。
+快速失败：被拒绝的调用不会到达真实主题，直接抛出 RejectedCallException，调用方可以据此降级。
+指标：每个方法分别统计放行和按原因分类的拒绝次数，放行调用的耗时记录在各自的 Histogram 中（微秒）。
+
+RejectedCallException、TokenBucket 和 Bulkhead 都是公开的类型，分别在同名的文件中，包外的调用方也可以创建受保护的代理，
+并按 reason() 区分拒绝原因；在舱壁中等待时被中断单独作为 INTERRUPTED，不计入等待超时。
+ */
+
+import src.java.util.Histogram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ProtectiveProxy<T> implements InvocationHandler {
+    private final Class<T> type;
+    private final T target;
+    private final TokenBucket rateLimit;
+    private final Bulkhead bulkhead;
+    private final Map<Method, MethodStats> stats = new ConcurrentHashMap<>();
+
+    private ProtectiveProxy(Class<T> type, T target, TokenBucket rateLimit, Bulkhead bulkhead) {
+        this.type = type;
+        this.target = target;
+        this.rateLimit = rateLimit;
+        this.bulkhead = bulkhead;
+        for (Method method : type.getMethods()) {
+            stats.put(method, new MethodStats(method));
+        }
+    }
+
+    // rateLimit、bulkhead 为 null 时不启用对应的保护
+    public static <T> T create(Class<T> type, T target, TokenBucket rateLimit, Bulkhead bulkhead) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException(type.getName() + " is not an interface");
+        }
+        ProtectiveProxy<T> handler = new ProtectiveProxy<>(type, target, rateLimit, bulkhead);
+        return type.cast(java.lang.reflect.Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    public static ProtectiveProxy<?> of(Object proxy) {
+        if (java.lang.reflect.Proxy.isProxyClass(proxy.getClass())) {
+            InvocationHandler handler = java.lang.reflect.Proxy.getInvocationHandler(proxy);
+            if (handler instanceof ProtectiveProxy) {
+                return (ProtectiveProxy<?>) handler;
+            }
+        }
+        throw new IllegalArgumentException("Not a protective proxy: " + proxy);
+    }
+
+    // 每个方法的统计，key 是方法名和参数类型；没有被调用过的方法不列出
+    public Map<String, MethodStats> metrics() {
+        Map<String, MethodStats> result = new LinkedHashMap<>();
+        stats.values().stream()
+                .filter(s -> s.admitted.sum() + s.rejected() > 0)
+                .sorted((a, b) -> a.name.compareTo(b.name))
+                .forEach(s -> result.put(s.name, s));
+        return result;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "ProtectiveProxy[" + type.getName() + "]";
+            }
+        }
+        MethodStats s = stats.get(method);
+        if (rateLimit != null && !rateLimit.tryAcquire()) {
+            s.rateLimited.increment();
+            throw new RejectedCallException(RejectedCallException.Reason.RATE_LIMITED, s.name);
+        }
+        if (bulkhead != null) {
+            RejectedCallException.Reason reason = bulkhead.enter();
+            if (reason != null) {
+                switch (reason) {
+                    case BULKHEAD_FULL:
+                        s.bulkheadFull.increment();
+                        break;
+                    case INTERRUPTED:
+                        s.interrupted.increment();
+                        break;
+                    default:
+                        s.waitTimeout.increment();
+                        break;
+                }
+                throw new RejectedCallException(reason, s.name);
+            }
+        }
+        s.admitted.increment();
+        long start = System.nanoTime();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            s.latencyMicros.record((System.nanoTime() - start) / 1000);
+            if (bulkhead != null) {
+                bulkhead.exit();
+            }
+        }
+    }
+
+    public static final class MethodStats {
+        private final String name;
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder bulkheadFull = new LongAdder();
+        private final LongAdder waitTimeout = new LongAdder();
+        private final LongAdder interrupted = new LongAdder();
+        private final Histogram latencyMicros = new Histogram();
+
+        MethodStats(Method method) {
+            StringBuilder sb = new StringBuilder(method.getName()).append('(');
+            Class<?>[] params = method.getParameterTypes();
+            for (int i = 0; i < params.length; i++) {
+                sb.append(i == 0 ? "" : ", ").append(params[i].getSimpleName());
+            }
+            this.name = sb.append(')').toString();
+        }
+
+        public long admitted() {
+            return admitted.sum();
+        }
+
+        public long rejected() {
+            return rateLimited.sum() + bulkheadFull.sum() + waitTimeout.sum() + interrupted.sum();
+        }
+
+        public long rateLimited() {
+            return rateLimited.sum();
+        }
+
+        public long bulkheadFull() {
+            return bulkheadFull.sum();
+        }
+
+        public long waitTimeout() {
+            return waitTimeout.sum();
+        }
+
+        public long interrupted() {
+            return interrupted.sum();
+        }
+
+        // 只包含放行的调用
+        public Histogram latencyMicros() {
+            return latencyMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "admitted=" + admitted() + ", rateLimited=" + rateLimited() + ", bulkheadFull=" + bulkheadFull()
+                    + ", waitTimeout=" + waitTimeout() + ", interrupted=" + interrupted()
+                    + ", latency: " + latencyMicros.summary("us");
+        }
+    }
+}
+
+// 客户端代码：50 个线程同时调用一个每次耗时 50ms 的服务，最多 4 个并发、8 个等待，限流每秒 100 次
+class ProtectiveProxyExample {
+    public static void main(String[] args) throws InterruptedException {
+        PriceService prices = ProtectiveProxy.create(PriceService.class, new SlowPriceService(),
+                new TokenBucket(100, 20), new Bulkhead(4, 8, 100, TimeUnit.MILLISECONDS));
+
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] callers = new Thread[50];
+        for (int i = 0; i < callers.length; i++) {
+            final String sku = "sku-" + i;
+            callers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    prices.priceOf(sku);
+                    outcomes.computeIfAbsent("ok", k -> new LongAdder()).increment();
+                } catch (RejectedCallException e) {
+                    outcomes.computeIfAbsent(e.reason().name(), k -> new LongAdder()).increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            callers[i].start();
+        }
+        start.countDown();
+        for (Thread t : callers) {
+            t.join();
+        }
+
+        System.out.println("outcomes: " + outcomes);
+        ProtectiveProxy.of(prices).metrics().forEach((method, s) -> System.out.println(method + ": " + s));
+    }
+}
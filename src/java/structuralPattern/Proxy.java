@@ -29,18 +29,25 @@ class RealSubject implements Subject {
 
 // 3. 定义代理
 public class Proxy implements Subject {
-    // 包含一个引用
-    private RealSubject realSubject;
+    // 包含一个引用；volatile 加双重检查，多个线程同时第一次访问时也只创建一个真实主题
+    private volatile RealSubject realSubject;
 
     @Override
     public void request() {
         // 在访问真实主题之前可以添加额外的逻辑
         // 例如用户身份判断
-        if (realSubject == null) {
-            realSubject = new RealSubject();
+        RealSubject subject = realSubject;
+        if (subject == null) {
+            synchronized (this) {
+                subject = realSubject;
+                if (subject == null) {
+                    subject = new RealSubject();
+                    realSubject = subject;
+                }
+            }
         }
         // 调用真实主题的方法
-        realSubject.request();
+        subject.request();
 
         // 在访问真实主题之后可以添加额外的逻辑
     }
@@ -0,0 +1,24 @@
+package src.java.structuralPattern;
+
+// 调用被保护性代理拒绝，没有到达真实主题
+public class RejectedCallException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        RATE_LIMITED, BULKHEAD_FULL, WAIT_TIMEOUT,
+        // 在舱壁中等待时线程被中断，抛出时线程的中断标志仍然是设置的
+        INTERRUPTED
+    }
+
+    private final Reason reason;
+
+    public RejectedCallException(Reason reason, String method) {
+        // 拒绝是正常的流量控制，不需要收集调用栈，让快速失败的路径足够便宜
+        super(method + " rejected: " + reason, null, false, false);
+        this.reason = reason;
+    }
+
+    public Reason reason() {
+        return reason;
+    }
+}
@@ -0,0 +1,195 @@
+package src.java.structuralPattern;
+
+/*
+享元图形的批量绘制。
+
+Main.processCommand 每读一行就 new 一个 Position 传给 draw，外部状态全部变成了堆上的小对象。
+ShapeBatch 按 ShapeType 分组收集外部状态，坐标用 Position.pack 打包成 long 存在每种类型各自的数组里，
+render 时每种类型只查一次享元，然后调用 Shape.drawAll 一次画完整组，过程中不为单个图形分配任何对象。
+数组按倍数扩容，clear 之后可以复用，稳定之后添加和绘制都不再分配内存。
+ */
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+class ShapeBatch {
+    private static final ShapeType[] TYPES = ShapeType.values();
+    // print 每次绘制的图形数
+    private static final int PRINT_CHUNK = 2048;
+
+    private final long[][] placements = new long[TYPES.length][];
+    private final int[] counts = new int[TYPES.length];
+
+    ShapeBatch() {
+        this(16);
+    }
+
+    ShapeBatch(int initialCapacityPerType) {
+        for (int t = 0; t < TYPES.length; t++) {
+            placements[t] = new long[Math.max(1, initialCapacityPerType)];
+        }
+    }
+
+    public void add(ShapeType type, int x, int y) {
+        int t = type.ordinal();
+        int n = counts[t];
+        if (n == placements[t].length) {
+            placements[t] = Arrays.copyOf(placements[t], n * 2);
+        }
+        placements[t][n] = Position.pack(x, y);
+        counts[t] = n + 1;
+    }
+
+    public void addAll(ShapeType type, int[] xs, int[] ys, int offset, int count) {
+        int t = type.ordinal();
+        int n = counts[t];
+        if (n + count > placements[t].length) {
+            placements[t] = Arrays.copyOf(placements[t], Math.max(n + count, n * 2));
+        }
+        long[] target = placements[t];
+        for (int i = 0; i < count; i++) {
+            target[n + i] = Position.pack(xs[offset + i], ys[offset + i]);
+        }
+        counts[t] = n + count;
+    }
+
+    public int size() {
+        int total = 0;
+        for (int n : counts) {
+            total += n;
+        }
+        return total;
+    }
+
+    // 按 ShapeType 的声明顺序逐组绘制
+    public StringBuilder render(ShapeFactory factory, StringBuilder out) {
+        for (int t = 0; t < TYPES.length; t++) {
+            if (counts[t] > 0) {
+                factory.getShape(TYPES[t]).drawAll(placements[t], 0, counts[t], out);
+            }
+        }
+        return out;
+    }
+
+    // 分块绘制并写入 out，缓冲区大小与批的大小无关，图形再多也不会创建超大的 StringBuilder
+    public void print(ShapeFactory factory, PrintStream out) {
+        StringBuilder sb = new StringBuilder(PRINT_CHUNK * 32);
+        for (int t = 0; t < TYPES.length; t++) {
+            if (counts[t] == 0) {
+                continue;
+            }
+            Shape shape = factory.getShape(TYPES[t]);
+            for (int offset = 0; offset < counts[t]; offset += PRINT_CHUNK) {
+                shape.drawAll(placements[t], offset, Math.min(PRINT_CHUNK, counts[t] - offset), sb);
+                out.append(sb);
+                sb.setLength(0);
+            }
+        }
+        out.flush();
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+}
+
+/*
+5000 万次放置的吞吐量对比：
+逐个绘制：和 Main.processCommand 一样，每次查享元、new Position、draw。
+批量绘制：ShapeBatch 分组后调用 drawAll。
+两条路径都把输出写进同一个 StringBuilder，超过 64KB 就清空，避免输出本身成为瓶颈。
+放置数据按 100 万一块循环生成，内存占用与总数无关。
+用法：java src.java.structuralPattern.ShapeBatchBenchmark [放置次数]
+ */
+class ShapeBatchBenchmark {
+    private static final int CHUNK = 1 << 20;
+    private static final int FLUSH_AT = 64 * 1024;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        long placements = args.length > 0 ? Long.parseLong(args[0]) : 50_000_000L;
+        ShapeType[] types = new ShapeType[CHUNK];
+        int[] xs = new int[CHUNK];
+        int[] ys = new int[CHUNK];
+        ShapeType[] all = ShapeType.values();
+        int seed = 17;
+        for (int i = 0; i < CHUNK; i++) {
+            seed = seed * 1103515245 + 12345;
+            types[i] = all[(seed >>> 16) % all.length];
+            xs[i] = (seed >>> 4) & 4095;
+            ys[i] = (seed >>> 10) & 4095;
+        }
+
+        // 预热
+        perCall(types, xs, ys, Math.min(placements, 4L * CHUNK));
+        batched(types, xs, ys, Math.min(placements, 4L * CHUNK));
+
+        System.out.printf("%-10s %14s %12s %14s%n", "path", "placements/s", "ns/placement", "bytes/placement");
+        for (int round = 0; round < 3; round++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            perCall(types, xs, ys, placements);
+            report("per-call", placements, System.nanoTime() - start, allocatedBytes() - bytes);
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            batched(types, xs, ys, placements);
+            report("batched", placements, System.nanoTime() - start, allocatedBytes() - bytes);
+        }
+    }
+
+    private static void report(String path, long placements, long elapsed, long bytes) {
+        System.out.printf("%-10s %14.0f %12.2f %14.2f%n", path,
+                placements * 1e9 / elapsed, elapsed / (double) placements, bytes / (double) placements);
+    }
+
+    private static void perCall(ShapeType[] types, int[] xs, int[] ys, long placements) {
+        ShapeFactory factory = new ShapeFactory();
+        StringBuilder out = new StringBuilder(FLUSH_AT + 64);
+        long written = 0;
+        for (long done = 0; done < placements; ) {
+            int n = (int) Math.min(CHUNK, placements - done);
+            for (int i = 0; i < n; i++) {
+                ConcreteShape shape = (ConcreteShape) factory.getShape(types[i]);
+                shape.draw(new Position(xs[i], ys[i]), out);
+                shape.setFirstTime(false);
+                if (out.length() > FLUSH_AT) {
+                    written += out.length();
+                    out.setLength(0);
+                }
+            }
+            done += n;
+        }
+        sink += written + out.length();
+    }
+
+    // 每次放入 4096 个再绘制，和输出缓冲的刷新粒度相当
+    private static void batched(ShapeType[] types, int[] xs, int[] ys, long placements) {
+        ShapeFactory factory = new ShapeFactory();
+        ShapeBatch batch = new ShapeBatch(4096);
+        StringBuilder out = new StringBuilder(FLUSH_AT + 64);
+        long written = 0;
+        for (long done = 0; done < placements; ) {
+            int n = (int) Math.min(CHUNK, placements - done);
+            for (int i = 0; i < n; i++) {
+                batch.add(types[i], xs[i], ys[i]);
+                if ((i & 4095) == 4095) {
+                    batch.render(factory, out);
+                    batch.clear();
+                    written += out.length();
+                    out.setLength(0);
+                }
+            }
+            batch.render(factory, out);
+            batch.clear();
+            done += n;
+        }
+        sink += written + out.length();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,50 @@
+package src.java.structuralPattern;
+
+import java.util.Arrays;
+
+// 一批绘制命令，按列存放（类型的 ordinal、x、y），可以 clear 后复用
+class ShapeCommands {
+    private byte[] types;
+    private int[] xs;
+    private int[] ys;
+    private int size;
+
+    ShapeCommands(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        types = new byte[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+    }
+
+    public void add(ShapeType type, int x, int y) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        types[size] = (byte) type.ordinal();
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    byte[] types() {
+        return types;
+    }
+
+    int[] xs() {
+        return xs;
+    }
+
+    int[] ys() {
+        return ys;
+    }
+}
@@ -0,0 +1,29 @@
+package src.java.structuralPattern;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// 示例的真实主题：每次查询耗时 50ms，并统计构造和调用次数
+class SlowPriceService implements PriceService {
+    static final LongAdder CONSTRUCTED = new LongAdder();
+    static final LongAdder CALLS = new LongAdder();
+
+    SlowPriceService() {
+        CONSTRUCTED.increment();
+    }
+
+    @Override
+    public long priceOf(String sku) {
+        CALLS.increment();
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Math.abs(sku.hashCode() % 10_000);
+    }
+
+    @Override
+    public void audit(String message) {
+        System.out.println("audit: " + message);
+    }
+}
@@ -0,0 +1,243 @@
+package src.java.structuralPattern;
+
+/*
+计时装饰者：统计装饰链中每一层的调用次数和耗时，找出是哪一种调料拖慢了整杯咖啡。
+
+TimingDecorator 本身也是一个 Decorator，可以手动套在任意 Coffee 外面，也可以用 instrument 自动插入：
+EVERY_LAYER：在链中每一层（每个装饰者以及最内层的咖啡）外面各插入一个计时层。
+    原来的装饰链不做任何修改（它可能被 CoffeeCombinations 共享，也可能正被其他线程使用），
+    而是用 Decorator.rewrap 从内到外复制出一条平行的链，在复制的每一层外面套上计时层；最内层的咖啡本身不复制。
+    不支持 rewrap 的装饰者连同它内部的部分作为一个整体计时，和 FusedCoffee 对待重写了 brew 的装饰者一样。
+    原链中手动加入的 TimingDecorator 照样复制，不会在它外面再套一层。
+OUTERMOST：只在最外面套一层，开销最小，只能看到整条链的耗时。
+strip 对 instrument 返回的链返回原来的那条链，对其他的 Coffee（包括手动加入的计时层）原样返回。
+每个计时层按它所包住的那一层的类型（MilkDecorator、SugarDecorator、BlackCoffee……）汇总到 DecoratorTimings 中：
+包含时间：这一层及其内部所有层的耗时。
+自身时间：包含时间减去内层计时层的耗时，也就是这一层自己的 before / after 所花的时间。
+    内层耗时通过一个线程本地的累加器传给外层，不需要在计时层之间共享可变状态。
+耗时记录在 Histogram 中（纳秒），桶是 LongAdder，多个线程同时记录时没有锁。
+ */
+
+import src.java.util.Histogram;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+class TimingDecorator extends Decorator {
+    enum Mode {
+        EVERY_LAYER, OUTERMOST
+    }
+
+    // 当前线程中内层计时层累计的耗时
+    private static final ThreadLocal<long[]> CHILD_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final DecoratorTimings timings;
+    private final DecoratorTimings.Layer layer;
+    // instrument 返回的最外层记录被计时的原链，strip 据此还原；其他计时层为 null
+    private final Coffee original;
+
+    TimingDecorator(Coffee coffee, DecoratorTimings timings) {
+        this(coffee, timings, null);
+    }
+
+    private TimingDecorator(Coffee coffee, DecoratorTimings timings, Coffee original) {
+        this(coffee, timings, timings.layer(coffee.getClass()), original);
+    }
+
+    private TimingDecorator(Coffee coffee, DecoratorTimings timings, DecoratorTimings.Layer layer, Coffee original) {
+        super(coffee);
+        this.timings = timings;
+        this.layer = layer;
+        this.original = original;
+    }
+
+    @Override
+    public void brew() {
+        long[] child = CHILD_NANOS.get();
+        long outer = child[0];
+        child[0] = 0;
+        long start = System.nanoTime();
+        try {
+            coffee.brew();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            layer.record(elapsed, elapsed - child[0]);
+            child[0] = outer + elapsed;
+        }
+    }
+
+    @Override
+    protected Decorator rewrap(Coffee inner) {
+        return new TimingDecorator(inner, timings, layer, null);
+    }
+
+    // 返回插入了计时层的新链，coffee 所在的原链不会被修改
+    static Coffee instrument(Coffee coffee, DecoratorTimings timings, Mode mode) {
+        if (mode == Mode.OUTERMOST) {
+            return new TimingDecorator(coffee, timings, coffee);
+        }
+        // 从外到内收集各层装饰者，再从内到外逐层复制；最外面的计时层记录原链
+        List<Decorator> layers = new ArrayList<>();
+        Coffee core = coffee;
+        while (core instanceof Decorator) {
+            Decorator decorator = (Decorator) core;
+            layers.add(decorator);
+            core = decorator.coffee;
+        }
+        Coffee timed = new TimingDecorator(core, timings, layers.isEmpty() ? coffee : null);
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            Decorator decorator = layers.get(i);
+            Coffee original = i == 0 ? coffee : null;
+            if (decorator instanceof TimingDecorator) {
+                // 手动加入的计时层只复制，仍然记录到它原来的 timings 和层中
+                TimingDecorator manual = (TimingDecorator) decorator;
+                timed = new TimingDecorator(timed, manual.timings, manual.layer, original);
+                continue;
+            }
+            // 不支持 rewrap 时内层已经复制的部分作废，原来的这一层连同它的内部作为一个整体计时
+            Decorator copy = decorator.rewrap(timed);
+            timed = new TimingDecorator(copy != null ? copy : decorator, timings, original);
+        }
+        return timed;
+    }
+
+    // 去掉 instrument 插入的计时层，返回原来的链；不是 instrument 返回的链原样返回
+    static Coffee strip(Coffee coffee) {
+        if (coffee instanceof TimingDecorator && ((TimingDecorator) coffee).original != null) {
+            return ((TimingDecorator) coffee).original;
+        }
+        return coffee;
+    }
+}
+
+// 按层的类型汇总的耗时统计
+class DecoratorTimings {
+    private final Map<Class<?>, Layer> layers = new ConcurrentHashMap<>();
+
+    Layer layer(Class<?> type) {
+        return layers.computeIfAbsent(type, Layer::new);
+    }
+
+    public Layer get(Class<?> type) {
+        return layers.get(type);
+    }
+
+    public void reset() {
+        for (Layer layer : layers.values()) {
+            layer.calls.reset();
+            layer.inclusiveNanos.reset();
+            layer.selfNanos.reset();
+        }
+    }
+
+    // 按自身时间总和从大到小排列，最慢的一层排在第一行
+    public String report() {
+        List<Layer> sorted = new ArrayList<>(layers.values());
+        sorted.sort((a, b) -> Long.compare(b.selfNanos.sum(), a.selfNanos.sum()));
+        long totalSelf = 0;
+        for (Layer layer : sorted) {
+            totalSelf += layer.selfNanos.sum();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-20s %10s %8s %12s %12s %12s %14s %14s%n", "layer", "calls", "share",
+                "self mean", "self p50", "self p99", "incl mean", "incl p99"));
+        for (Layer layer : sorted) {
+            Histogram self = layer.selfNanos;
+            Histogram inclusive = layer.inclusiveNanos;
+            sb.append(String.format("%-20s %10d %7.1f%% %10.0fns %10dns %10dns %12.0fns %12dns%n",
+                    layer.type.getSimpleName(), layer.calls.sum(),
+                    totalSelf == 0 ? 0 : self.sum() * 100.0 / totalSelf,
+                    self.mean(), self.percentile(50), self.percentile(99),
+                    inclusive.mean(), inclusive.percentile(99)));
+        }
+        return sb.toString();
+    }
+
+    static final class Layer {
+        private final Class<?> type;
+        private final LongAdder calls = new LongAdder();
+        private final Histogram inclusiveNanos = new Histogram();
+        private final Histogram selfNanos = new Histogram();
+
+        Layer(Class<?> type) {
+            this.type = type;
+        }
+
+        void record(long inclusive, long self) {
+            calls.increment();
+            inclusiveNanos.record(inclusive);
+            selfNanos.record(self);
+        }
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public Histogram inclusiveNanos() {
+            return inclusiveNanos;
+        }
+
+        public Histogram selfNanos() {
+            return selfNanos;
+        }
+    }
+}
+
+// 客户端代码：一条链中混入一个很慢的调料，报告中它应当排在第一位
+class TimingDecoratorExample {
+    // 每次加糖浆都要等 50 微秒
+    static class SyrupDecorator extends Decorator {
+        SyrupDecorator(Coffee coffee) {
+            super(coffee);
+        }
+
+        @Override
+        protected void before() {
+            long deadline = System.nanoTime() + 50_000;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+
+        @Override
+        protected Decorator rewrap(Coffee inner) {
+            return new SyrupDecorator(inner);
+        }
+    }
+
+    public static void main(String[] args) {
+        Coffee coffee = new MilkDecorator(new SyrupDecorator(new SugarDecorator(new Latte())));
+        DecoratorTimings timings = new DecoratorTimings();
+        Coffee timed = TimingDecorator.instrument(coffee, timings, TimingDecorator.Mode.EVERY_LAYER);
+
+        // 各层的输出不是这里关心的内容
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                timed.brew();
+            }
+        } finally {
+            System.setOut(out);
+        }
+        System.out.print(timings.report());
+
+        // 原链没有被修改：直接调用它不会产生计时记录，strip 返回的就是它
+        long calls = timings.get(MilkDecorator.class).calls();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            coffee.brew();
+        } finally {
+            System.setOut(out);
+        }
+        System.out.println("original chain untouched: " + (timings.get(MilkDecorator.class).calls() == calls));
+        Coffee restored = TimingDecorator.strip(timed);
+        System.out.println("restored original chain: " + (restored == coffee));
+        restored.brew();
+    }
+}
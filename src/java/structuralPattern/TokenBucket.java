@@ -0,0 +1,38 @@
+package src.java.structuralPattern;
+
+/*
+令牌桶限流，用“理论到达时间”（GCRA）实现：
+每个许可占用 interval 的时间，tat 记录按当前速率下一个许可可用的时间点；
+tat 领先当前时间不超过 (burst - 1) * interval 时放行并把 tat 后移 interval，否则拒绝。
+效果等同于容量为 burst、每 interval 补充一个令牌的令牌桶，只需要一个 AtomicLong 和一次 CAS，没有定时补充的线程。
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong tat = new AtomicLong(System.nanoTime());
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1e9 / permitsPerSecond));
+        this.burstNanos = (burst - 1) * intervalNanos;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long start = current - now > 0 ? current : now;
+            if (start - now > burstNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package src.java.util;
+
+/*
+基于字节缓冲区的输入读取器，用来替换各个示例 main 方法中的 java.util.Scanner。
+
+Scanner 每读一个记号都要走一遍正则匹配，批量处理输入文件时每秒只能处理几十万条记录。
+FastReader 直接在 64KB 的 byte[] 缓冲区上按字节解析：
+nextInt / nextLong：在缓冲区上逐字节累加数字，不创建任何字符串。
+nextToken / nextLine：短记号通过一个直接映射的小缓存复用已经创建过的 String，
+    输入中反复出现的记号（颜色、类型名等）只会在第一次出现时分配一次。
+语义和 Scanner 保持一致：记号以空白字符分隔；nextLine 返回当前行剩余的内容（不含换行符）；
+没有更多输入时抛出 NoSuchElementException，数字格式错误或超出 int / long 的范围时抛出 InputMismatchException，
+    和 Scanner 一样，出错的记号不会被消费，之后还可以用 nextToken 把它读出来。
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+public class FastReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CACHE_SIZE = 1 << 10;
+    private static final int MAX_CACHED_LENGTH = 64;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // 记号暂存区，跨越缓冲区边界的记号也能完整拼出来
+    private byte[] token = new byte[64];
+
+    // 字符串缓存：按记号字节的哈希直接映射，冲突时覆盖
+    private final byte[][] cacheKeys = new byte[CACHE_SIZE][];
+    private final String[] cacheValues = new String[CACHE_SIZE];
+
+    public FastReader(InputStream in) {
+        this.in = in;
+    }
+
+    // 跳过空白后是否还有记号
+    public boolean hasNext() {
+        int b;
+        while ((b = peek()) != -1 && isWhitespace(b)) {
+            position++;
+        }
+        return b != -1;
+    }
+
+    public boolean hasNextLine() {
+        return peek() != -1;
+    }
+
+    public int nextInt() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int end = tokenEnd();
+        long value = parseLong(position, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw mismatch(position, end);
+        }
+        position = end;
+        return (int) value;
+    }
+
+    public long nextLong() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int end = tokenEnd();
+        long value = parseLong(position, end);
+        position = end;
+        return value;
+    }
+
+    // 解析 buffer[start, end) 中的整数，不移动 position，出错时记号原样留在缓冲区中
+    private long parseLong(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        int b = buffer[i] & 0xFF;
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        if (i == end) {
+            throw mismatch(start, end);
+        }
+        // 按负数累加，Long.MIN_VALUE 也能表示；溢出由 multiplyExact / subtractExact 检测
+        long value = 0;
+        try {
+            for (; i < end; i++) {
+                int digit = (buffer[i] & 0xFF) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw mismatch(start, end);
+                }
+                value = Math.subtractExact(Math.multiplyExact(value, 10), digit);
+            }
+        } catch (ArithmeticException e) {
+            throw mismatch(start, end);
+        }
+        if (negative) {
+            return value;
+        }
+        if (value == Long.MIN_VALUE) {
+            throw mismatch(start, end);
+        }
+        return -value;
+    }
+
+    private InputMismatchException mismatch(int start, int end) {
+        return new InputMismatchException("For input string: \""
+                + new String(buffer, start, end - start, StandardCharsets.UTF_8) + "\"");
+    }
+
+    public String nextToken() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int length = 0;
+        int b;
+        while ((b = peek()) != -1 && !isWhitespace(b)) {
+            length = appendToken(length, b);
+            position++;
+        }
+        return toText(length);
+    }
+
+    public String nextLine() {
+        if (peek() == -1) {
+            throw new NoSuchElementException("No line found");
+        }
+        int length = 0;
+        int b;
+        while ((b = read()) != -1 && b != '\n') {
+            length = appendToken(length, b);
+        }
+        if (length > 0 && token[length - 1] == '\r') {
+            length--;
+        }
+        return toText(length);
+    }
+
+    private int appendToken(int length, int b) {
+        if (length == token.length) {
+            byte[] bigger = new byte[length << 1];
+            System.arraycopy(token, 0, bigger, 0, length);
+            token = bigger;
+        }
+        token[length] = (byte) b;
+        return length + 1;
+    }
+
+    private String toText(int length) {
+        if (length > MAX_CACHED_LENGTH) {
+            return new String(token, 0, length, StandardCharsets.UTF_8);
+        }
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + token[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        byte[] key = cacheKeys[slot];
+        if (key != null && key.length == length && equals(key, length)) {
+            return cacheValues[slot];
+        }
+        byte[] copy = new byte[length];
+        System.arraycopy(token, 0, copy, 0, length);
+        String text = new String(copy, StandardCharsets.UTF_8);
+        cacheKeys[slot] = copy;
+        cacheValues[slot] = text;
+        return text;
+    }
+
+    private boolean equals(byte[] key, int length) {
+        for (int i = 0; i < length; i++) {
+            if (key[i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() {
+        int b = peek();
+        if (b != -1) {
+            position++;
+        }
+        return b;
+    }
+
+    private int peek() {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() {
+        try {
+            int n;
+            do {
+                n = in.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            position = 0;
+            limit = n;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 保证从 position 开始的整个记号都在缓冲区中，返回记号结束的下标
+    private int tokenEnd() {
+        int scanned = 0;
+        while (true) {
+            int end = position + scanned;
+            while (end < limit && !isWhitespace(buffer[end] & 0xFF)) {
+                end++;
+            }
+            if (end < limit) {
+                return end;
+            }
+            scanned = end - position;
+            if (!fillMore()) {
+                return limit;
+            }
+        }
+    }
+
+    // 把还没有消费的字节移到缓冲区开头，在后面继续读入；一个记号占满整个缓冲区时扩容
+    private boolean fillMore() {
+        int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            position = 0;
+            limit = remaining;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        }
+        try {
+            int n;
+            do {
+                n = in.read(buffer, limit, buffer.length - limit);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+}
+
+/*
+吞吐量对比：Scanner.nextLine + String.split（Flyweight Main 原来的写法）与 FastReader 按记号读取。
+生成一个 "CIRCLE 12 34" 格式的临时文件，两种方式各读一遍，校验结果一致。
+用法：java src.java.util.FastReaderBenchmark [行数，默认 10000000]
+ */
+class FastReaderBenchmark {
+    private static final String[] TYPES = {"CIRCLE", "RECTANGLE", "TRIANGLE"};
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        File file = File.createTempFile("fast-reader", ".txt");
+        file.deleteOnExit();
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                out.write(TYPES[i % TYPES.length]);
+                out.write(' ');
+                out.write(Integer.toString(i % 10_000));
+                out.write(' ');
+                out.write(Integer.toString(i % 777));
+                out.write('\n');
+            }
+        }
+        System.out.printf("%,d lines, %,d bytes%n", lines, file.length());
+
+        long start = System.nanoTime();
+        long scannerSum = 0;
+        try (Scanner scanner = new Scanner(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            while (scanner.hasNext()) {
+                String[] parts = scanner.nextLine().split(" ");
+                scannerSum += parts[0].length() + Integer.parseInt(parts[1]) + Integer.parseInt(parts[2]);
+            }
+        }
+        report("Scanner+split", lines, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        long readerSum = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            FastReader reader = new FastReader(in);
+            while (reader.hasNext()) {
+                readerSum += reader.nextToken().length() + reader.nextInt() + reader.nextInt();
+            }
+        }
+        report("FastReader", lines, System.nanoTime() - start);
+
+        if (scannerSum != readerSum) {
+            throw new IllegalStateException("checksums differ: " + scannerSum + " vs " + readerSum);
+        }
+    }
+
+    private static void report(String name, int lines, long nanos) {
+        System.out.printf("%-14s %8.2f s %14.0f lines/s%n", name, nanos / 1e9, lines * 1e9 / nanos);
+    }
+}
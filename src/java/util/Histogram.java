@@ -0,0 +1,117 @@
+package src.java.util;
+
+/*
+并发直方图，用于统计耗时、批大小等非负整数的分布。
+
+桶按数量级划分：每个 2 的幂区间 [2^k, 2^(k+1)) 再等分成 4 个子桶，相对误差不超过 25%，
+从 0 到 Long.MAX_VALUE 一共 256 个桶，不需要事先知道取值范围。
+每个桶是一个 LongAdder，多个线程同时记录时分散到不同的单元上，record 只有一次自增，没有锁。
+读取（百分位、平均值）时对各个桶求和，并发写入时得到的是近似的快照。
+ */
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    // 负数按 0 记录
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts[bucket(v)].increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long count() {
+        long total = 0;
+        for (LongAdder c : counts) {
+            total += c.sum();
+        }
+        return total;
+    }
+
+    // 所有记录值的总和
+    public long sum() {
+        return sum.sum();
+    }
+
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : sum.sum() / (double) n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    // 第 p 百分位（0 < p <= 100）所在桶的上界，不超过记录到的最大值
+    public long percentile(double p) {
+        long n = count();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * Math.min(100, Math.max(0, p)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i].sum();
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), max());
+            }
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (LongAdder c : counts) {
+            c.reset();
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    // unit 只用于输出，例如 "us"、"ms"
+    public String summary(String unit) {
+        return String.format("count=%d, mean=%.1f%s, p50=%d%s, p90=%d%s, p99=%d%s, max=%d%s",
+                count(), mean(), unit, percentile(50), unit, percentile(90), unit,
+                percentile(99), unit, max(), unit);
+    }
+
+    @Override
+    public String toString() {
+        return summary("");
+    }
+
+    // 0 到 3 各占一个桶，之后每个数量级 4 个子桶
+    static int bucket(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lower = (1L << exponent) + ((long) sub << (exponent - SUB_BUCKET_BITS));
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1 < 0 ? Long.MAX_VALUE : lower + width - 1;
+    }
+}